@@ -0,0 +1,97 @@
+package org.wickedsource.docxstamper.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.wickedsource.docxstamper.CompiledTemplate;
+import org.wickedsource.docxstamper.DocxStamper;
+import org.wickedsource.docxstamper.DocxStamperConfiguration;
+import org.wickedsource.docxstamper.context.Character;
+import org.wickedsource.docxstamper.context.CharactersContext;
+import org.wickedsource.docxstamper.el.ExpressionCache;
+import org.wickedsource.docxstamper.el.ExpressionResolver;
+import org.wickedsource.docxstamper.el.NoOpEvaluationContextConfigurer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Compares interpreted and compiled evaluation of expressions with JMH, once for plain expression evaluation and once
+ * for stamping RepeatTableRowTest.docx with many rows. Not part of the test sources, the benchmark profile compiles it
+ * together with them and generates the JMH harness. Run it with the test classpath, e.g.:
+ * </p>
+ * <pre>
+ * mvn -Pbenchmark test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) org.openjdk.jmh.Main ExpressionEvaluationBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ExpressionEvaluationBenchmark {
+
+    private static final int ROWS = 2_000;
+
+    /**
+     * OFF evaluates the expressions interpreted.
+     */
+    @Param({"OFF", "MIXED", "IMMEDIATE"})
+    public SpelCompilerMode compilerMode;
+
+    private ExpressionResolver resolver;
+
+    private List<Character> characters;
+
+    private int nextCharacter;
+
+    private CompiledTemplate template;
+
+    private DocxStamper<CharactersContext> stamper;
+
+    private CharactersContext context;
+
+    @Setup
+    public void setUp() {
+        resolver = new ExpressionResolver(new NoOpEvaluationContextConfigurer(), new ExpressionCache(), compilerMode);
+        characters = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            characters.add(new Character("Character " + i, "Actor " + i));
+        }
+        template = DocxStamper.compile(ExpressionEvaluationBenchmark.class.getResourceAsStream("/org/wickedsource/docxstamper/RepeatTableRowTest.docx"));
+        stamper = new DocxStamperConfiguration()
+                .setSpelCompilerMode(compilerMode)
+                .build();
+        context = new CharactersContext();
+        context.getCharacters().addAll(characters);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object evaluate() {
+        Character character = characters.get(nextCharacter);
+        nextCharacter = (nextCharacter + 1) % characters.size();
+        return resolver.resolveExpression("${name}", character);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ByteArrayOutputStream stamp() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stamper.stamp(template, context, out);
+        return out;
+    }
+}
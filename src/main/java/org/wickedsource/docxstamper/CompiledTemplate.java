@@ -0,0 +1,170 @@
+package org.wickedsource.docxstamper;
+
+import org.apache.commons.io.IOUtils;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.io3.Load3;
+import org.docx4j.openpackaging.io3.stores.PartStore;
+import org.docx4j.openpackaging.io3.stores.ZipPartStore;
+import org.docx4j.openpackaging.packages.OpcPackage;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.WordprocessingML.CommentsPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FooterPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.openpackaging.parts.relationships.RelationshipsPart;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.P;
+import org.wickedsource.docxstamper.api.DocxStamperException;
+import org.wickedsource.docxstamper.io.LazyLoad;
+import org.wickedsource.docxstamper.io.ZipArchive;
+import org.wickedsource.docxstamper.io.ZipArchivePartStore;
+import org.wickedsource.docxstamper.util.CommentIndex;
+import org.wickedsource.docxstamper.util.DocumentUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * A .docx template that has been read once and can be stamped any number of times. Create instances with
+ * {@link DocxStamper#compile(InputStream)} or {@link DocxStamper#compile(Path)}.
+ * </p>
+ * <p>
+ * The parts stamping works on, i.e. the main document, its headers and footers and the comments, are unmarshalled
+ * once when the template is compiled, together with the positions of the comments within the paragraphs. Each
+ * stamping process gets a deep copy of these parts and an index of its comments built from the recorded positions.
+ * Only the content types and relationships are parsed again. All other parts stay compressed in the zip archive of the
+ * template and are inflated and unmarshalled on demand, by the stamping processes that access them. A
+ * CompiledTemplate is immutable and can be shared between threads.
+ * </p>
+ * <p>
+ * Parts left untouched by stamping can be copied into the stamped documents as they are, without inflating them
+ * (see DocxStamperConfiguration.setCopyUntouchedParts(boolean)).
+ * </p>
+ * <p>
+ * A template compiled from a file is memory-mapped instead of being read onto the heap: only the parts unmarshalled
+ * at compile time are held on the heap, all other parts are inflated straight from the mapping.
+ * </p>
+ */
+public class CompiledTemplate {
+
+    private final PartStore partStore;
+
+    private final ZipArchive archive;
+
+    /**
+     * The unmarshalled parts that are copied for each stamping process, by their name. Empty if the template has not
+     * been prepared for repeated stamping.
+     */
+    private final Map<PartName, JaxbXmlPart<?>> stampedParts = new LinkedHashMap<>();
+
+    private final CommentIndex.Positions commentPositions;
+
+    CompiledTemplate(InputStream template) throws Docx4JException {
+        try {
+            this.archive = new ZipArchive(IOUtils.toByteArray(template));
+        } catch (IOException e) {
+            throw new Docx4JException("Error reading the template", e);
+        }
+        this.partStore = new ZipArchivePartStore(archive);
+        // loading the template also fails fast if it is not a valid .docx document.
+        this.commentPositions = prepare(load(false));
+    }
+
+    CompiledTemplate(Path template) throws Docx4JException {
+        this(template, true);
+    }
+
+    /**
+     * @param prepare false to skip unmarshalling the template up front, e.g. if it is stamped only once anyway.
+     */
+    CompiledTemplate(Path template, boolean prepare) throws Docx4JException {
+        try {
+            this.archive = ZipArchive.map(template);
+        } catch (IOException e) {
+            throw new Docx4JException(String.format("Error reading the template %s", template), e);
+        }
+        this.partStore = new ZipArchivePartStore(archive);
+        this.commentPositions = prepare ? prepare(load(false)) : null;
+    }
+
+    /**
+     * Unmarshals the parts stamping works on and records the positions of the comments within the paragraphs.
+     */
+    private CommentIndex.Positions prepare(WordprocessingMLPackage template) throws Docx4JException {
+        for (JaxbXmlPart<?> part : getStampedParts(template)) {
+            part.getContents();
+            stampedParts.put(part.getPartName(), part);
+        }
+        List<P> paragraphs = DocumentUtil.extractElements(template, P.class);
+        return new CommentIndex(template, paragraphs).getPositions(paragraphs);
+    }
+
+    private static List<JaxbXmlPart<?>> getStampedParts(WordprocessingMLPackage document) {
+        List<JaxbXmlPart<?>> parts = new ArrayList<>();
+        parts.add(document.getMainDocumentPart());
+        RelationshipsPart relationshipsPart = document.getMainDocumentPart().getRelationshipsPart();
+        if (relationshipsPart != null) {
+            for (Relationship relationship : relationshipsPart.getRelationships().getRelationship()) {
+                Part part = relationshipsPart.getPart(relationship);
+                if (part instanceof HeaderPart || part instanceof FooterPart || part instanceof CommentsPart) {
+                    parts.add((JaxbXmlPart<?>) part);
+                }
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Creates a new copy of the template that can be modified without affecting the template or other copies.
+     *
+     * @param lazyLoading true to load the copy without parsing its custom XML parts, see {@link LazyLoad}.
+     * @return a fresh document backed by the parts of this template.
+     * @throws Docx4JException in case the document could not be created from the template parts.
+     */
+    WordprocessingMLPackage newDocument(boolean lazyLoading) throws Docx4JException {
+        WordprocessingMLPackage document = load(lazyLoading);
+        if (!stampedParts.isEmpty()) {
+            for (Map.Entry<PartName, JaxbXmlPart<?>> entry : stampedParts.entrySet()) {
+                Part part = document.getParts().get(entry.getKey());
+                if (part instanceof JaxbXmlPart) {
+                    copyContents(entry.getValue(), (JaxbXmlPart<?>) part);
+                }
+            }
+            CommentIndex.attachPositions(document, commentPositions);
+        }
+        return document;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> void copyContents(JaxbXmlPart<E> source, JaxbXmlPart<?> target) throws Docx4JException {
+        ((JaxbXmlPart<E>) target).setJaxbElement(XmlUtils.deepCopy(source.getContents(), source.getJAXBContext()));
+    }
+
+    private WordprocessingMLPackage load(boolean lazyLoading) throws Docx4JException {
+        OpcPackage opcPackage = (lazyLoading ? new LazyLoad(partStore) : new Load3(partStore)).get();
+        if (!(opcPackage instanceof WordprocessingMLPackage)) {
+            throw new DocxStamperException(String.format("Template is not a .docx document but a %s!", opcPackage.getClass().getSimpleName()));
+        }
+        // each copy needs its own target store, otherwise concurrent saves would share the same output stream.
+        ZipPartStore targetPartStore = new ZipPartStore();
+        targetPartStore.setSourcePartStore(partStore);
+        opcPackage.setTargetPartStore(targetPartStore);
+        return (WordprocessingMLPackage) opcPackage;
+    }
+
+    /**
+     * @return the zip archive of the template.
+     */
+    ZipArchive getArchive() {
+        return archive;
+    }
+}
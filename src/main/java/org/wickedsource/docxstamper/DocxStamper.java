@@ -1,79 +1,79 @@
 package org.wickedsource.docxstamper;
 
+import org.apache.commons.io.IOUtils;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.io3.Save;
+import org.docx4j.openpackaging.io3.stores.ZipPartStore;
+import org.docx4j.openpackaging.packages.OpcPackage;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.wickedsource.docxstamper.api.DocxStamperException;
-import org.wickedsource.docxstamper.api.commentprocessor.ICommentProcessor;
 import org.wickedsource.docxstamper.api.typeresolver.TypeResolverRegistry;
-import org.wickedsource.docxstamper.el.ExpressionResolver;
-import org.wickedsource.docxstamper.processor.CommentProcessorRegistry;
-import org.wickedsource.docxstamper.processor.displayif.DisplayIfProcessor;
-import org.wickedsource.docxstamper.processor.displayif.IDisplayIfProcessor;
-import org.wickedsource.docxstamper.processor.repeat.*;
-import org.wickedsource.docxstamper.processor.replaceExpression.IReplaceWithProcessor;
-import org.wickedsource.docxstamper.processor.replaceExpression.ReplaceWithProcessor;
-import org.wickedsource.docxstamper.proxy.ProxyBuilder;
-import org.wickedsource.docxstamper.replace.PlaceholderReplacer;
+import org.wickedsource.docxstamper.el.ExpressionCache;
+import org.wickedsource.docxstamper.io.LazyLoad;
+import org.wickedsource.docxstamper.io.ZipArchive;
+import org.wickedsource.docxstamper.io.StreamingZipPartStore;
 import org.wickedsource.docxstamper.replace.typeresolver.DateResolver;
 import org.wickedsource.docxstamper.replace.typeresolver.FallbackResolver;
 import org.wickedsource.docxstamper.replace.typeresolver.image.Image;
 import org.wickedsource.docxstamper.replace.typeresolver.image.ImageResolver;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
 
 /**
  * <p>
  * Main class of the docx-stamper library. This class can be used to "stamp" .docx templates
  * to create a .docx document filled with custom data at runtime.
  * </p>
+ * <p>
+ * A DocxStamper is immutable: all state of a stamping process is kept in a session created per call of stamp().
+ * A single instance can therefore be shared by all threads, provided that the type resolvers and expression functions
+ * added to its configuration are thread-safe. Comment processors keep the state of a stamping process, so each session
+ * creates its own ones from the factories added via DocxStamperConfiguration.addCommentProcessor(Class, Supplier).
+ * Stamping processes using a comment processor added as an instance are run one at a time.
+ * </p>
  *
  * @param <T> the class of the context object used to resolve expressions against.
  */
 public class DocxStamper<T> {
 
-    private PlaceholderReplacer<T> placeholderReplacer;
+    private final DocxStamperConfiguration config;
 
-    private CommentProcessorRegistry commentProcessorRegistry;
+    private final TypeResolverRegistry typeResolverRegistry;
 
-    private DocxStamperConfiguration config = new DocxStamperConfiguration();
+    private final ExpressionCache expressionCache;
 
     public DocxStamper() {
-        initFields();
+        this(new DocxStamperConfiguration());
     }
 
+    /**
+     * @param config the configuration to use. Changes made to the configuration afterwards do not affect the created
+     *               DocxStamper.
+     */
     public DocxStamper(DocxStamperConfiguration config) {
-        this.config = config;
-        initFields();
-    }
-
-    private void initFields() {
-        TypeResolverRegistry typeResolverRegistry = new TypeResolverRegistry(new FallbackResolver());
-        typeResolverRegistry.registerTypeResolver(Image.class, new ImageResolver());
+        this.config = new DocxStamperConfiguration(config);
+        this.typeResolverRegistry = new TypeResolverRegistry(new FallbackResolver());
+        typeResolverRegistry.registerTypeResolver(Image.class, new ImageResolver(this.config.getImageScaling()));
         typeResolverRegistry.registerTypeResolver(Date.class, new DateResolver("dd.MM.yyyy"));
-        config.getTypeResolvers().forEach(typeResolverRegistry::registerTypeResolver);
-
-        ExpressionResolver expressionResolver = new ExpressionResolver(config.getEvaluationContextConfigurer());
-        placeholderReplacer = new PlaceholderReplacer<>(typeResolverRegistry, config.getLineBreakPlaceholder());
-        placeholderReplacer.setExpressionResolver(expressionResolver);
-        placeholderReplacer.setLeaveEmptyOnExpressionError(config.isLeaveEmptyOnExpressionError());
-        placeholderReplacer.setReplaceNullValues(config.isReplaceNullValues());
-        placeholderReplacer.setNullValuesDefault(config.getNullValuesDefault());
-        placeholderReplacer.setReplaceUnresolvedExpressions(config.isReplaceUnresolvedExpressions());
-        placeholderReplacer.setUnresolvedExpressionsDefaultValue(config.getUnresolvedExpressionsDefaultValue());
-
-        commentProcessorRegistry = new CommentProcessorRegistry(placeholderReplacer);
-        commentProcessorRegistry.setExpressionResolver(expressionResolver);
-        commentProcessorRegistry.setFailOnInvalidExpression(config.isFailOnUnresolvedExpression());
-        commentProcessorRegistry.registerCommentProcessor(IRepeatProcessor.class, new RepeatProcessor(typeResolverRegistry, expressionResolver, config));
-        commentProcessorRegistry.registerCommentProcessor(IParagraphRepeatProcessor.class, new ParagraphRepeatProcessor(typeResolverRegistry, expressionResolver, config));
-        commentProcessorRegistry.registerCommentProcessor(IRepeatDocPartProcessor.class, new RepeatDocPartProcessor(config));
-        commentProcessorRegistry.registerCommentProcessor(IDisplayIfProcessor.class, new DisplayIfProcessor());
-        commentProcessorRegistry.registerCommentProcessor(IReplaceWithProcessor.class, new ReplaceWithProcessor(config));
-        for (Map.Entry<Class<?>, ICommentProcessor> entry : config.getCommentProcessors().entrySet()) {
-            commentProcessorRegistry.registerCommentProcessor(entry.getKey(), entry.getValue());
-        }
+        this.config.getTypeResolvers().forEach(typeResolverRegistry::registerTypeResolver);
+        this.expressionCache = new ExpressionCache(this.config.getExpressionCacheSize(), this.config.getExpressionCacheEvictionPolicy());
     }
 
     /**
@@ -111,7 +111,7 @@ public class DocxStamper<T> {
      */
     public void stamp(InputStream template, T contextRoot, OutputStream out) throws DocxStamperException {
         try {
-            WordprocessingMLPackage document = WordprocessingMLPackage.load(template);
+            WordprocessingMLPackage document = config.isLazyLoading() ? loadLazily(template) : WordprocessingMLPackage.load(template);
             stamp(document, contextRoot, out);
         } catch (DocxStamperException e) {
             throw e;
@@ -120,6 +120,307 @@ public class DocxStamper<T> {
         }
     }
 
+    /**
+     * <p>
+     * Loads a .docx document without parsing the parts that are never accessed, to be passed to
+     * stamp(WordprocessingMLPackage, T, OutputStream). Stamping only reads the main document, headers, footers,
+     * comments and relationships, so all other parts are only parsed if a custom comment processor or type resolver
+     * accesses them.
+     * </p>
+     * <p>
+     * In contrast to WordprocessingMLPackage.load(InputStream), custom XML parts are neither parsed while loading
+     * nor detected as OpenDoPE or bibliography parts. Documents in other formats than a zipped .docx file (e.g. Flat
+     * OPC XML) are loaded by docx4j as usual. Templates passed to stamp() are only loaded this way if lazy loading is
+     * switched on, see DocxStamperConfiguration.setLazyLoading(boolean).
+     * </p>
+     *
+     * @param document the .docx document.
+     * @return the loaded document.
+     * @throws DocxStamperException in case the document could not be read.
+     */
+    public static WordprocessingMLPackage loadLazily(InputStream document) throws DocxStamperException {
+        try {
+            BufferedInputStream in = new BufferedInputStream(document);
+            if (!isZipArchive(in)) {
+                return WordprocessingMLPackage.load(in);
+            }
+            OpcPackage opcPackage = new LazyLoad(new ZipPartStore(in)).get();
+            if (!(opcPackage instanceof WordprocessingMLPackage)) {
+                throw new DocxStamperException(String.format("Template is not a .docx document but a %s!", opcPackage.getClass().getSimpleName()));
+            }
+            return (WordprocessingMLPackage) opcPackage;
+        } catch (DocxStamperException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DocxStamperException(e);
+        }
+    }
+
+    private static boolean isZipArchive(BufferedInputStream in) throws IOException {
+        byte[] signature = new byte[4];
+        in.mark(signature.length);
+        int length = IOUtils.read(in, signature);
+        in.reset();
+        return length == signature.length && signature[0] == 'P' && signature[1] == 'K' && signature[2] == 3 && signature[3] == 4;
+    }
+
+    /**
+     * Reads in a .docx template once so that it can be stamped many times without parsing the .docx file again.
+     *
+     * @param template the .docx template.
+     * @return the compiled template, to be passed to stamp(CompiledTemplate, T, OutputStream).
+     * @throws DocxStamperException in case the template could not be read.
+     */
+    public static CompiledTemplate compile(InputStream template) throws DocxStamperException {
+        try {
+            return new CompiledTemplate(template);
+        } catch (DocxStamperException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DocxStamperException(e);
+        }
+    }
+
+    /**
+     * Same as compile(InputStream) except that the template file is memory-mapped instead of being read onto the heap.
+     * The parts of the template are inflated straight from the mapping each time a document is stamped, so that large
+     * templates do not occupy heap memory between stamping processes. The file must not be modified as long as the
+     * compiled template is in use. The mapping is only released once the compiled template is garbage collected; until
+     * then, the file cannot be deleted or replaced on Windows.
+     *
+     * @param template the path of the .docx template.
+     * @return the compiled template, to be passed to stamp(CompiledTemplate, T, OutputStream).
+     * @throws DocxStamperException in case the template could not be read.
+     */
+    public static CompiledTemplate compile(Path template) throws DocxStamperException {
+        try {
+            return new CompiledTemplate(template);
+        } catch (DocxStamperException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DocxStamperException(e);
+        }
+    }
+
+    /**
+     * Same as stamp(InputStream, T, OutputStream) except that the template is read from a memory-mapped file, see
+     * compile(Path). The template is loaded once, for the document being stamped. Compile the template once if you
+     * stamp it more than once. The mapping of the file is only released once it is garbage collected, not when this
+     * method returns. On Windows, the file thus cannot be deleted or replaced right after stamping.
+     *
+     * @param template    the path of the .docx template.
+     * @param contextRoot the context root object against which all expressions found in the template are evaluated.
+     * @param out         the output stream in which to write the resulting .docx document.
+     * @throws DocxStamperException in case of an error.
+     */
+    public void stamp(Path template, T contextRoot, OutputStream out) throws DocxStamperException {
+        CompiledTemplate compiledTemplate;
+        try {
+            // the document stamped from the template fails just as a validation copy would
+            compiledTemplate = new CompiledTemplate(template, false);
+        } catch (DocxStamperException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DocxStamperException(e);
+        }
+        stamp(compiledTemplate, contextRoot, out);
+    }
+
+    /**
+     * Same as stamp(InputStream, T, OutputStream) except that you may pass in a template compiled with
+     * compile(InputStream). The compiled template is left untouched and may be stamped again.
+     *
+     * @param template    the compiled .docx template.
+     * @param contextRoot the context root object against which all expressions found in the template are evaluated.
+     * @param out         the output stream in which to write the resulting .docx document.
+     * @throws DocxStamperException in case of an error.
+     */
+    public void stamp(CompiledTemplate template, T contextRoot, OutputStream out) throws DocxStamperException {
+        try {
+            WordprocessingMLPackage document = template.newDocument(config.isLazyLoading());
+            newSession().stamp(document, contextRoot);
+            save(document, out, config.isCopyUntouchedParts() ? template.getArchive() : null);
+        } catch (DocxStamperException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DocxStamperException(e);
+        }
+    }
+
+    /**
+     * Same as stamp(CompiledTemplate, T, OutputStream) except that the document is written to a channel, e.g. a
+     * {@link java.nio.channels.FileChannel} or a {@link java.nio.channels.SocketChannel}. The parts of the document are
+     * written to the channel while they are compressed. The channel is closed once the document is written.
+     *
+     * @param template    the compiled .docx template.
+     * @param contextRoot the context root object against which all expressions found in the template are evaluated.
+     * @param out         the channel to write the resulting .docx document to.
+     * @throws DocxStamperException in case of an error.
+     */
+    public void stamp(CompiledTemplate template, T contextRoot, WritableByteChannel out) throws DocxStamperException {
+        stamp(template, contextRoot, Channels.newOutputStream(out));
+    }
+
+    /**
+     * Stamps the template once for each of the given context objects, one after another on the calling thread. See
+     * stampAll(CompiledTemplate, Iterable, Function, Executor, int).
+     *
+     * @param template the .docx template, read only once.
+     * @param contexts the context root objects, one per document to create.
+     * @param sink     opens the output stream to write the document of a context object to.
+     * @return the documents that could not be stamped, in the order of the contexts.
+     * @throws DocxStamperException in case the template could not be read.
+     */
+    public List<StampingFailure<T>> stampAll(InputStream template, Iterable<T> contexts, Function<T, OutputStream> sink) throws DocxStamperException {
+        return stampAll(compile(template), contexts, sink);
+    }
+
+    /**
+     * Stamps the template once for each of the given context objects, one after another on the calling thread. See
+     * stampAll(CompiledTemplate, Iterable, Function, Executor, int).
+     *
+     * @param template the compiled .docx template.
+     * @param contexts the context root objects, one per document to create.
+     * @param sink     opens the output stream to write the document of a context object to.
+     * @return the documents that could not be stamped, in the order of the contexts.
+     */
+    public List<StampingFailure<T>> stampAll(CompiledTemplate template, Iterable<T> contexts, Function<T, OutputStream> sink) {
+        List<StampingFailure<T>> failures = new ArrayList<>();
+        long index = 0;
+        for (T context : contexts) {
+            StampingFailure<T> failure = stampItem(template, index++, context, sink);
+            if (failure != null) {
+                failures.add(failure);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * <p>
+     * Stamps the template once for each of the given context objects on the given executor, e.g. a
+     * {@link java.util.concurrent.ForkJoinPool} or a fixed thread pool.
+     * </p>
+     * <p>
+     * The contexts are pulled from the iterable only when a document may be started. At most maxInFlight
+     * documents are stamped at the same time, which bounds the memory used by the batch. The output stream opened by
+     * the sink is closed once the document has been written to it.
+     * </p>
+     * <p>
+     * A document that fails does not abort the batch. It is reported in the returned list instead, together with
+     * its context object. If pulling the contexts or scheduling a document fails, the documents already started are
+     * finished before the exception is rethrown, with the failures of the documents so far added as suppressed
+     * exceptions.
+     * </p>
+     *
+     * @param template    the compiled .docx template.
+     * @param contexts    the context root objects, one per document to create.
+     * @param sink        opens the output stream to write the document of a context object to.
+     * @param executor    the executor to stamp the documents on.
+     * @param maxInFlight the maximum number of documents stamped at the same time.
+     * @return the documents that could not be stamped, in the order of the contexts.
+     * @throws DocxStamperException if the calling thread is interrupted while waiting for the documents.
+     */
+    public List<StampingFailure<T>> stampAll(CompiledTemplate template, Iterable<T> contexts, Function<T, OutputStream> sink,
+                                             Executor executor, int maxInFlight) throws DocxStamperException {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1!");
+        }
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Queue<StampingFailure<T>> failures = new ConcurrentLinkedQueue<>();
+        RuntimeException error = null;
+        try {
+            long index = 0;
+            Iterator<T> iterator = contexts.iterator();
+            while (true) {
+                // the permit is taken before the context is pulled, and given back unless a document is started with it
+                inFlight.acquire();
+                boolean submitted = false;
+                try {
+                    if (!iterator.hasNext()) {
+                        break;
+                    }
+                    long currentIndex = index++;
+                    T context = iterator.next();
+                    try {
+                        executor.execute(() -> {
+                            try {
+                                StampingFailure<T> failure = stampItem(template, currentIndex, context, sink);
+                                if (failure != null) {
+                                    failures.add(failure);
+                                }
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                        submitted = true;
+                    } catch (RejectedExecutionException e) {
+                        failures.add(new StampingFailure<>(currentIndex, context, new DocxStamperException("Document could not be scheduled!", e)));
+                    }
+                } finally {
+                    if (!submitted) {
+                        inFlight.release();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = new DocxStamperException("Interrupted while stamping documents!", e);
+        } catch (RuntimeException e) {
+            error = e;
+        } finally {
+            // all permits are available again once the last document is finished, none may still be written to its
+            // sink once this method has returned or thrown
+            inFlight.acquireUninterruptibly(maxInFlight);
+        }
+        List<StampingFailure<T>> sortedFailures = new ArrayList<>(failures);
+        sortedFailures.sort(Comparator.comparingLong(StampingFailure::getIndex));
+        if (error != null) {
+            for (StampingFailure<T> failure : sortedFailures) {
+                error.addSuppressed(failure.getException());
+            }
+            throw error;
+        }
+        return sortedFailures;
+    }
+
+    /**
+     * <p>
+     * Lazily stamps the template for each of the given context objects. The returned iterator pulls a context from
+     * the given iterator only when the consumer has room for another document, which makes it suitable for
+     * connecting an unbounded source (e.g. a message queue consumer) to a streaming sink (e.g. an upload).
+     * </p>
+     * <p>
+     * Up to readAhead documents are stamped ahead on the given executor while the consumer processes the current
+     * one. Documents are returned in the order of the contexts. The iterator must only be used by one thread. A
+     * consumer that stops before the end closes the iterator, so that the documents stamped ahead are cancelled.
+     * </p>
+     *
+     * @param template  the compiled .docx template.
+     * @param contexts  the context root objects, pulled on the thread consuming the returned iterator.
+     * @param executor  the executor to stamp the documents on.
+     * @param readAhead the maximum number of documents stamped but not yet consumed.
+     * @return the stamped documents. Its next() method throws a DocxStamperException for a document that could not
+     * be stamped.
+     */
+    public StampingIterator<T> stampEach(CompiledTemplate template, Iterator<? extends T> contexts, Executor executor, int readAhead) {
+        return new StampingIterator<>(this, template, contexts, executor, readAhead);
+    }
+
+    /**
+     * @return the failure if the document could not be stamped, null otherwise.
+     */
+    private StampingFailure<T> stampItem(CompiledTemplate template, long index, T context, Function<T, OutputStream> sink) {
+        try (OutputStream out = sink.apply(context)) {
+            stamp(template, context, out);
+            return null;
+        } catch (DocxStamperException e) {
+            return new StampingFailure<>(index, context, e);
+        } catch (Exception e) {
+            return new StampingFailure<>(index, context, new DocxStamperException(e));
+        }
+    }
+
     /**
      * Same as stamp(InputStream, T, OutputStream) except that you may pass in a DOCX4J document as a template instead
      * of an InputStream.
@@ -131,11 +432,8 @@ public class DocxStamper<T> {
      */
     public void stamp(WordprocessingMLPackage document, T contextRoot, OutputStream out) throws DocxStamperException {
         try {
-            ProxyBuilder<T> proxyBuilder = addCustomInterfacesToContextRoot(contextRoot, this.config.getExpressionFunctions());
-            processComments(document, proxyBuilder);
-            replaceExpressions(document, proxyBuilder);
-            document.save(out);
-            commentProcessorRegistry.reset();
+            newSession().stamp(document, contextRoot);
+            save(document, out, null);
         } catch (DocxStamperException e) {
             throw e;
         } catch (Exception e) {
@@ -143,26 +441,27 @@ public class DocxStamper<T> {
         }
     }
 
-    private ProxyBuilder<T> addCustomInterfacesToContextRoot(T contextRoot, Map<Class<?>, Object> interfacesToImplementations) {
-        ProxyBuilder<T> proxyBuilder = new ProxyBuilder<T>()
-                .withRoot(contextRoot);
-        if (interfacesToImplementations.isEmpty()) {
-            return proxyBuilder;
-        }
-        for (Map.Entry<Class<?>, Object> entry : interfacesToImplementations.entrySet()) {
-            Class<?> interfaceClass = entry.getKey();
-            Object implementation = entry.getValue();
-            proxyBuilder.withInterface(interfaceClass, implementation);
-        }
-        return proxyBuilder;
+    /**
+     * Gives access to the cache of parsed expressions, e.g. to monitor its hit and miss counts.
+     *
+     * @return the expression cache shared by all stamping processes of this DocxStamper.
+     */
+    public ExpressionCache getExpressionCache() {
+        return expressionCache;
     }
 
-    private void replaceExpressions(WordprocessingMLPackage document, ProxyBuilder<T> proxyBuilder) {
-        placeholderReplacer.resolveExpressions(document, proxyBuilder);
+    /**
+     * Saves the document into a target part store of its own. WordprocessingMLPackage.save() would use the source
+     * part store as target, which is shared by all documents created from the same CompiledTemplate.
+     *
+     * @param templateArchive the archive of the template to copy untouched parts from, null to write all parts anew.
+     */
+    private void save(WordprocessingMLPackage document, OutputStream out, ZipArchive templateArchive) throws Docx4JException {
+        new Save(document, new StreamingZipPartStore(config.getCompressionStrategy(), templateArchive)).save(out);
     }
 
-    private void processComments(final WordprocessingMLPackage document, ProxyBuilder<T> proxyBuilder) {
-        commentProcessorRegistry.runProcessors(document, proxyBuilder);
+    private StampingSession<T> newSession() {
+        return new StampingSession<>(config, typeResolverRegistry, expressionCache, config.getRepeatDocPartExecutor());
     }
 
 }
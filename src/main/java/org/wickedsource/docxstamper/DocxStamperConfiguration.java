@@ -1,14 +1,22 @@
 package org.wickedsource.docxstamper;
 
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.wickedsource.docxstamper.api.EvaluationContextConfigurer;
 import org.wickedsource.docxstamper.api.commentprocessor.ICommentProcessor;
 import org.wickedsource.docxstamper.api.typeresolver.ITypeResolver;
+import org.wickedsource.docxstamper.el.ExpressionCache;
 import org.wickedsource.docxstamper.el.NoOpEvaluationContextConfigurer;
+import org.wickedsource.docxstamper.io.CompressionStrategy;
 import org.wickedsource.docxstamper.replace.typeresolver.FallbackResolver;
+import org.wickedsource.docxstamper.replace.typeresolver.image.ImageScaling;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Provides configuration parameters for DocxStamper.
@@ -31,7 +39,7 @@ public class DocxStamperConfiguration {
 
     private String nullValuesDefault = null;
 
-    private final Map<Class<?>, ICommentProcessor> commentProcessors = new HashMap<>();
+    private final Map<Class<?>, Supplier<? extends ICommentProcessor>> commentProcessors = new HashMap<>();
 
     private final Map<Class<?>, ITypeResolver> typeResolvers = new HashMap<>();
 
@@ -39,6 +47,52 @@ public class DocxStamperConfiguration {
 
     private final Map<Class<?>, Object> expressionFunctions = new HashMap<>();
 
+    private int expressionCacheSize = ExpressionCache.DEFAULT_MAXIMUM_SIZE;
+
+    private ExpressionCache.EvictionPolicy expressionCacheEvictionPolicy = ExpressionCache.EvictionPolicy.LEAST_RECENTLY_USED;
+
+    private SpelCompilerMode spelCompilerMode = SpelCompilerMode.OFF;
+
+    private Executor repeatDocPartExecutor = null;
+
+    private CompressionStrategy compressionStrategy = CompressionStrategy.DEFAULT;
+
+    private boolean copyUntouchedParts = false;
+
+    private boolean lazyLoading = false;
+
+    private ImageScaling imageScaling = null;
+
+    public DocxStamperConfiguration() {
+    }
+
+    /**
+     * Copies the given configuration, so that a DocxStamper is not affected by later changes to the configuration it
+     * was created with.
+     */
+    DocxStamperConfiguration(DocxStamperConfiguration other) {
+        this.lineBreakPlaceholder = other.lineBreakPlaceholder;
+        this.evaluationContextConfigurer = other.evaluationContextConfigurer;
+        this.failOnUnresolvedExpression = other.failOnUnresolvedExpression;
+        this.leaveEmptyOnExpressionError = other.leaveEmptyOnExpressionError;
+        this.replaceUnresolvedExpressions = other.replaceUnresolvedExpressions;
+        this.unresolvedExpressionsDefaultValue = other.unresolvedExpressionsDefaultValue;
+        this.replaceNullValues = other.replaceNullValues;
+        this.nullValuesDefault = other.nullValuesDefault;
+        this.commentProcessors.putAll(other.commentProcessors);
+        this.typeResolvers.putAll(other.typeResolvers);
+        this.defaultTypeResolver = other.defaultTypeResolver;
+        this.expressionFunctions.putAll(other.expressionFunctions);
+        this.expressionCacheSize = other.expressionCacheSize;
+        this.expressionCacheEvictionPolicy = other.expressionCacheEvictionPolicy;
+        this.spelCompilerMode = other.spelCompilerMode;
+        this.repeatDocPartExecutor = other.repeatDocPartExecutor;
+        this.compressionStrategy = other.compressionStrategy;
+        this.copyUntouchedParts = other.copyUntouchedParts;
+        this.lazyLoading = other.lazyLoading;
+        this.imageScaling = other.imageScaling;
+    }
+
     /**
      * The String provided as lineBreakPlaceholder will be replaces with a line break
      * when stamping a document. If no lineBreakPlaceholder is provided, no replacement
@@ -75,14 +129,30 @@ public class DocxStamperConfiguration {
 
     /**
      * Registers the specified ICommentProcessor as an implementation of the
-     * specified interface.
+     * specified interface. The same instance is used by all stamping processes. Since comment processors keep the
+     * state of a stamping process, stamping processes using the same instance are run one at a time, and the items of
+     * a repeatDocPart() comment are stamped one after another. Use addCommentProcessor(Class, Supplier) to stamp
+     * concurrently.
      *
      * @param interfaceClass   the Interface which is implemented by the commentProcessor.
      * @param commentProcessor the commentProcessor implementing the specified interface.
      */
     public DocxStamperConfiguration addCommentProcessor(Class<?> interfaceClass,
                                                         ICommentProcessor commentProcessor) {
-        this.commentProcessors.put(interfaceClass, commentProcessor);
+        this.commentProcessors.put(interfaceClass, new SharedCommentProcessor(commentProcessor));
+        return this;
+    }
+
+    /**
+     * Registers a factory for ICommentProcessors implementing the specified interface. A new comment processor is
+     * created for each stamping process, so that its state is never shared between documents stamped concurrently.
+     *
+     * @param interfaceClass          the Interface which is implemented by the created comment processors.
+     * @param commentProcessorFactory creates a comment processor implementing the specified interface.
+     */
+    public DocxStamperConfiguration addCommentProcessor(Class<?> interfaceClass,
+                                                        Supplier<? extends ICommentProcessor> commentProcessorFactory) {
+        this.commentProcessors.put(interfaceClass, commentProcessorFactory);
         return this;
     }
 
@@ -172,6 +242,143 @@ public class DocxStamperConfiguration {
         return this;
     }
 
+    /**
+     * Sets the maximum number of parsed expressions a DocxStamper keeps in its cache. Set to 0 to disable caching.
+     * Defaults to {@link ExpressionCache#DEFAULT_MAXIMUM_SIZE}.
+     *
+     * @param expressionCacheSize the maximum number of cached expressions.
+     */
+    public DocxStamperConfiguration setExpressionCacheSize(int expressionCacheSize) {
+        if (expressionCacheSize < 0) {
+            throw new IllegalArgumentException("expressionCacheSize must not be negative!");
+        }
+        this.expressionCacheSize = expressionCacheSize;
+        return this;
+    }
+
+    /**
+     * Sets the policy deciding which parsed expression is evicted once the expression cache is full. Defaults to
+     * {@link ExpressionCache.EvictionPolicy#LEAST_RECENTLY_USED}.
+     *
+     * @param expressionCacheEvictionPolicy the eviction policy of the expression cache.
+     */
+    public DocxStamperConfiguration setExpressionCacheEvictionPolicy(ExpressionCache.EvictionPolicy expressionCacheEvictionPolicy) {
+        if (expressionCacheEvictionPolicy == null) {
+            throw new IllegalArgumentException("expressionCacheEvictionPolicy must not be null!");
+        }
+        this.expressionCacheEvictionPolicy = expressionCacheEvictionPolicy;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Sets the mode of the SpEL compiler used for expressions in the template text and in comments. Defaults to
+     * {@link SpelCompilerMode#OFF}, i.e. all expressions are interpreted.
+     * </p>
+     * <p>
+     * With {@link SpelCompilerMode#MIXED} or {@link SpelCompilerMode#IMMEDIATE} expressions are compiled into bytecode
+     * once they have been evaluated, which pays off for expressions evaluated many times, e.g. in repeated table rows.
+     * MIXED silently falls back to the interpreter if a compiled expression fails, IMMEDIATE reports the failure.
+     * Compiled expressions are kept in the expression cache, so it should not be disabled in this case.
+     * </p>
+     *
+     * @param spelCompilerMode the compiler mode to use.
+     */
+    public DocxStamperConfiguration setSpelCompilerMode(SpelCompilerMode spelCompilerMode) {
+        this.spelCompilerMode = spelCompilerMode;
+        return this;
+    }
+
+    /**
+     * <p>
+     * Sets the executor on which the items of a repeatDocPart() comment are stamped concurrently, e.g. a
+     * {@link java.util.concurrent.ForkJoinPool}. Defaults to null, i.e. all items are stamped one after another on
+     * the thread calling DocxStamper.stamp().
+     * </p>
+     * <p>
+     * The stamped items are inserted into the document in the order of the list, regardless of the order in which they
+     * are finished. Repetitions nested within a repeated part are stamped on the thread of their enclosing item.
+     * Each item gets comment processors of its own from the factories added via addCommentProcessor(Class, Supplier).
+     * If a comment processor has been added as an instance, the items are stamped one after another nevertheless,
+     * since the instance would be used by several items at once. Type resolvers are shared by the concurrently stamped
+     * items, so they have to be thread-safe when an executor is set.
+     * </p>
+     *
+     * @param repeatDocPartExecutor the executor to stamp the repeated parts on, null to stamp them sequentially.
+     */
+    public DocxStamperConfiguration setRepeatDocPartExecutor(Executor repeatDocPartExecutor) {
+        this.repeatDocPartExecutor = repeatDocPartExecutor;
+        return this;
+    }
+
+    /**
+     * Sets the strategy deciding how each part of a stamped document is compressed. Defaults to
+     * {@link CompressionStrategy#DEFAULT}, which stores compressed media like PNG and JPEG images as is and deflates
+     * all other parts with the default level. Use e.g. CompressionStrategy.storeCompressedMedia(Deflater.BEST_SPEED)
+     * to spend less CPU time on compression at the cost of larger documents.
+     *
+     * @param compressionStrategy the compression strategy to write stamped documents with.
+     */
+    public DocxStamperConfiguration setCompressionStrategy(CompressionStrategy compressionStrategy) {
+        if (compressionStrategy == null) {
+            throw new IllegalArgumentException("compressionStrategy must not be null!");
+        }
+        this.compressionStrategy = compressionStrategy;
+        return this;
+    }
+
+    /**
+     * <p>
+     * If set to true, parts of a {@link CompiledTemplate} that are not touched while stamping, e.g. images, fonts,
+     * themes or settings, are copied into the stamped documents as raw zip entries, i.e. without inflating and
+     * deflating them again. These parts keep the compression they have in the template, the compression strategy
+     * only applies to the parts that are written anew. Defaults to false.
+     * </p>
+     * <p>
+     * A part counts as untouched as long as docx4j has not loaded it, so parts that are only read while stamping
+     * (like the main document) are written anew anyway. Documents not stamped from a CompiledTemplate are always
+     * written anew.
+     * </p>
+     *
+     * @param copyUntouchedParts true to copy untouched parts of compiled templates as they are.
+     */
+    public DocxStamperConfiguration setCopyUntouchedParts(boolean copyUntouchedParts) {
+        this.copyUntouchedParts = copyUntouchedParts;
+        return this;
+    }
+
+    /**
+     * <p>
+     * If set to true, templates are loaded without parsing their custom XML parts, see
+     * {@link DocxStamper#loadLazily(java.io.InputStream)}. A custom XML part is only parsed once a custom comment processor or
+     * type resolver accesses it, and is copied unchanged into the stamped document otherwise. Defaults to false, i.e.
+     * templates are loaded by docx4j as usual.
+     * </p>
+     * <p>
+     * Lazily loaded custom XML parts are always plain CustomXmlDataStorageParts, docx4j does not detect them as
+     * OpenDoPE or bibliography parts. Leave lazy loading off if the template relies on such parts.
+     * </p>
+     *
+     * @param lazyLoading true to load templates without parsing their custom XML parts up front.
+     */
+    public DocxStamperConfiguration setLazyLoading(boolean lazyLoading) {
+        this.lazyLoading = lazyLoading;
+        return this;
+    }
+
+    /**
+     * If set, images inserted via {@link org.wickedsource.docxstamper.replace.typeresolver.image.Image} are downscaled
+     * to the resolution of the image scaling at the size they are rendered at before they are embedded, e.g. a large
+     * photo shown as a small thumbnail via Image.maxWidth. The rendered size of the images does not change. Defaults
+     * to null, i.e. images are embedded as they are.
+     *
+     * @param imageScaling the scaling to apply to inserted images, null to embed them as they are.
+     */
+    public DocxStamperConfiguration setImageScaling(ImageScaling imageScaling) {
+        this.imageScaling = imageScaling;
+        return this;
+    }
+
     /**
      * Creates a {@link DocxStamper} instance configured with this configuration.
      */
@@ -187,10 +394,28 @@ public class DocxStamperConfiguration {
         return failOnUnresolvedExpression;
     }
 
-    Map<Class<?>, ICommentProcessor> getCommentProcessors() {
+    Map<Class<?>, Supplier<? extends ICommentProcessor>> getCommentProcessors() {
         return commentProcessors;
     }
 
+    /**
+     * @return true if a comment processor has been added as an instance, i.e. is shared by all stamping processes.
+     */
+    boolean hasSharedCommentProcessors() {
+        return commentProcessors.values().stream().anyMatch(factory -> factory instanceof SharedCommentProcessor);
+    }
+
+    /**
+     * @return the comment processors that have been added as instances, each one once.
+     */
+    List<ICommentProcessor> getSharedCommentProcessors() {
+        return commentProcessors.values().stream()
+                .filter(factory -> factory instanceof SharedCommentProcessor)
+                .map(factory -> ((SharedCommentProcessor) factory).get())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
     Map<Class<?>, ITypeResolver> getTypeResolvers() {
         return typeResolvers;
     }
@@ -231,4 +456,53 @@ public class DocxStamperConfiguration {
     public Map<Class<?>, Object> getExpressionFunctions() {
         return expressionFunctions;
     }
+
+    public int getExpressionCacheSize() {
+        return expressionCacheSize;
+    }
+
+    public ExpressionCache.EvictionPolicy getExpressionCacheEvictionPolicy() {
+        return expressionCacheEvictionPolicy;
+    }
+
+    public SpelCompilerMode getSpelCompilerMode() {
+        return spelCompilerMode;
+    }
+
+    public Executor getRepeatDocPartExecutor() {
+        return repeatDocPartExecutor;
+    }
+
+    public CompressionStrategy getCompressionStrategy() {
+        return compressionStrategy;
+    }
+
+    public boolean isCopyUntouchedParts() {
+        return copyUntouchedParts;
+    }
+
+    public boolean isLazyLoading() {
+        return lazyLoading;
+    }
+
+    public ImageScaling getImageScaling() {
+        return imageScaling;
+    }
+
+    /**
+     * Supplies a comment processor that has been added as an instance.
+     */
+    private static class SharedCommentProcessor implements Supplier<ICommentProcessor> {
+
+        private final ICommentProcessor commentProcessor;
+
+        SharedCommentProcessor(ICommentProcessor commentProcessor) {
+            this.commentProcessor = commentProcessor;
+        }
+
+        @Override
+        public ICommentProcessor get() {
+            return commentProcessor;
+        }
+    }
 }
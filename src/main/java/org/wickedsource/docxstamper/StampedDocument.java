@@ -0,0 +1,54 @@
+package org.wickedsource.docxstamper;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A document stamped by the iterator returned from
+ * {@link DocxStamper#stampEach(CompiledTemplate, java.util.Iterator, java.util.concurrent.Executor, int)}.
+ *
+ * @param <T> the class of the context object the document was stamped with.
+ */
+public class StampedDocument<T> {
+
+    private final long index;
+
+    private final T context;
+
+    private final byte[] content;
+
+    StampedDocument(long index, T context, byte[] content) {
+        this.index = index;
+        this.context = context;
+        this.content = content;
+    }
+
+    /**
+     * @return the position of the context among the stamped contexts, starting at 0.
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the context object the document was stamped with.
+     */
+    public T getContext() {
+        return context;
+    }
+
+    /**
+     * @return a read-only buffer containing the .docx document.
+     */
+    public ByteBuffer getContent() {
+        return ByteBuffer.wrap(content).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a stream to read the .docx document from.
+     */
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(content);
+    }
+}
@@ -0,0 +1,50 @@
+package org.wickedsource.docxstamper;
+
+import org.wickedsource.docxstamper.api.DocxStamperException;
+
+/**
+ * A document of a batch that could not be stamped, as reported by
+ * {@link DocxStamper#stampAll(CompiledTemplate, Iterable, java.util.function.Function)}.
+ *
+ * @param <T> the class of the context object the document was stamped with.
+ */
+public class StampingFailure<T> {
+
+    private final long index;
+
+    private final T context;
+
+    private final DocxStamperException exception;
+
+    StampingFailure(long index, T context, DocxStamperException exception) {
+        this.index = index;
+        this.context = context;
+        this.exception = exception;
+    }
+
+    /**
+     * @return the position of the context within the batch, starting at 0.
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the context object the document was stamped with.
+     */
+    public T getContext() {
+        return context;
+    }
+
+    /**
+     * @return the reason why the document could not be stamped.
+     */
+    public DocxStamperException getException() {
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Document %d failed: %s", index, exception.getMessage());
+    }
+}
@@ -0,0 +1,109 @@
+package org.wickedsource.docxstamper;
+
+import org.wickedsource.docxstamper.api.DocxStamperException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Stamps a template for each context pulled from an upstream iterator. Documents are stamped ahead on an executor,
+ * but never more than readAhead documents that have not been consumed yet, so the consumer controls how many
+ * contexts are pulled from upstream and how many documents are held in memory. Closing the iterator cancels the
+ * documents that have not started stamping yet and stops pulling contexts.
+ *
+ * @param <T> the class of the context objects.
+ */
+public class StampingIterator<T> implements Iterator<StampedDocument<T>>, AutoCloseable {
+
+    private final DocxStamper<T> stamper;
+
+    private final CompiledTemplate template;
+
+    private final Iterator<? extends T> contexts;
+
+    private final Executor executor;
+
+    private final int readAhead;
+
+    private final Deque<CompletableFuture<StampedDocument<T>>> pending = new ArrayDeque<>();
+
+    private long index = 0;
+
+    private long nextIndex = 0;
+
+    private boolean closed = false;
+
+    StampingIterator(DocxStamper<T> stamper, CompiledTemplate template, Iterator<? extends T> contexts, Executor executor, int readAhead) {
+        if (readAhead < 1) {
+            throw new IllegalArgumentException("readAhead must be at least 1!");
+        }
+        this.stamper = stamper;
+        this.template = template;
+        this.contexts = contexts;
+        this.executor = executor;
+        this.readAhead = readAhead;
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        return !pending.isEmpty();
+    }
+
+    /**
+     * @return the next document, in the order of the contexts.
+     * @throws DocxStamperException if the next document could not be stamped, caused by the exception thrown while
+     *                              stamping it. The documents of the remaining contexts can still be retrieved
+     *                              afterwards.
+     */
+    @Override
+    public StampedDocument<T> next() {
+        fill();
+        CompletableFuture<StampedDocument<T>> document = pending.poll();
+        if (document == null) {
+            throw new NoSuchElementException();
+        }
+        long documentIndex = nextIndex++;
+        // keeps stamping ahead while the consumer processes this document
+        fill();
+        try {
+            return document.join();
+        } catch (CompletionException e) {
+            // the exception of the stamping thread is wrapped to keep the stack trace of the consumer
+            throw new DocxStamperException("Could not stamp the document at index " + documentIndex + "!", e.getCause());
+        }
+    }
+
+    /**
+     * Cancels the documents that have not started stamping yet and stops pulling contexts from upstream. Documents
+     * that are being stamped are finished on the executor but discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (CompletableFuture<StampedDocument<T>> document : pending) {
+            document.cancel(false);
+        }
+        pending.clear();
+    }
+
+    private void fill() {
+        while (!closed && pending.size() < readAhead && contexts.hasNext()) {
+            long currentIndex = index++;
+            T context = contexts.next();
+            pending.add(CompletableFuture.supplyAsync(() -> stamp(currentIndex, context), executor));
+        }
+    }
+
+    private StampedDocument<T> stamp(long index, T context) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stamper.stamp(template, context, out);
+        return new StampedDocument<>(index, context, out.toByteArray());
+    }
+}
@@ -0,0 +1,171 @@
+package org.wickedsource.docxstamper;
+
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.ContentAccessor;
+import org.wickedsource.docxstamper.api.commentprocessor.ICommentProcessor;
+import org.wickedsource.docxstamper.api.typeresolver.TypeResolverRegistry;
+import org.wickedsource.docxstamper.el.ExpressionCache;
+import org.wickedsource.docxstamper.el.ExpressionResolver;
+import org.wickedsource.docxstamper.processor.CommentProcessorRegistry;
+import org.wickedsource.docxstamper.processor.displayif.DisplayIfProcessor;
+import org.wickedsource.docxstamper.processor.displayif.IDisplayIfProcessor;
+import org.wickedsource.docxstamper.processor.repeat.*;
+import org.wickedsource.docxstamper.processor.replaceExpression.IReplaceWithProcessor;
+import org.wickedsource.docxstamper.processor.replaceExpression.ReplaceWithProcessor;
+import org.wickedsource.docxstamper.replace.PlaceholderReplacer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Holds the state of stamping a single document: the comment processors collecting their changes to the document,
+ * the placeholder replacer and the expression resolver with its evaluation context.
+ * </p>
+ * <p>
+ * A new session is created for each call of DocxStamper.stamp() and for each repetition of a repeatDocPart() comment.
+ * This way a DocxStamper holds no state of a stamping process and can be used by several threads at once, and a
+ * failed stamping process leaves nothing behind that could affect the next one. Comment processors added as instances
+ * are the exception, so sessions using the same instance do not run concurrently.
+ * </p>
+ *
+ * @param <T> the class of the context object used to resolve expressions against.
+ */
+class StampingSession<T> {
+
+    private static final Object TIE_LOCK = new Object();
+
+    private final DocxStamperConfiguration config;
+
+    private final TypeResolverRegistry typeResolverRegistry;
+
+    private final ExpressionCache expressionCache;
+
+    private final PlaceholderReplacer<T> placeholderReplacer;
+
+    private final CommentProcessorRegistry commentProcessorRegistry;
+
+    /**
+     * The comment processors added as instances, locked while stamping a document.
+     */
+    private final List<Object> sharedCommentProcessorLocks;
+
+    /**
+     * @param config                the configuration of the DocxStamper.
+     * @param typeResolverRegistry  the type resolvers shared by all sessions.
+     * @param expressionCache       the parsed expressions shared by all sessions.
+     * @param repeatDocPartExecutor the executor to stamp repeated doc parts on, null to stamp them on the calling
+     *                              thread.
+     */
+    StampingSession(DocxStamperConfiguration config, TypeResolverRegistry typeResolverRegistry,
+                    ExpressionCache expressionCache, Executor repeatDocPartExecutor) {
+        this.config = config;
+        this.typeResolverRegistry = typeResolverRegistry;
+        this.expressionCache = expressionCache;
+
+        ExpressionResolver expressionResolver = createExpressionResolver();
+        // the methods of the comment processors are only available to expressions within comments
+        ExpressionResolver commentExpressionResolver = createExpressionResolver();
+        placeholderReplacer = new PlaceholderReplacer<>(typeResolverRegistry, config.getLineBreakPlaceholder());
+        placeholderReplacer.setExpressionResolver(expressionResolver);
+        placeholderReplacer.setLeaveEmptyOnExpressionError(config.isLeaveEmptyOnExpressionError());
+        placeholderReplacer.setReplaceNullValues(config.isReplaceNullValues());
+        placeholderReplacer.setNullValuesDefault(config.getNullValuesDefault());
+        placeholderReplacer.setReplaceUnresolvedExpressions(config.isReplaceUnresolvedExpressions());
+        placeholderReplacer.setUnresolvedExpressionsDefaultValue(config.getUnresolvedExpressionsDefaultValue());
+
+        commentProcessorRegistry = new CommentProcessorRegistry(placeholderReplacer);
+        commentProcessorRegistry.setExpressionResolver(commentExpressionResolver);
+        commentProcessorRegistry.setFailOnInvalidExpression(config.isFailOnUnresolvedExpression());
+        commentProcessorRegistry.registerCommentProcessor(IRepeatProcessor.class, new RepeatProcessor(typeResolverRegistry, expressionResolver, config));
+        commentProcessorRegistry.registerCommentProcessor(IParagraphRepeatProcessor.class, new ParagraphRepeatProcessor(typeResolverRegistry, expressionResolver, config));
+        // a comment processor added as an instance must not be used by several items at once
+        Executor docPartExecutor = config.hasSharedCommentProcessors() ? null : repeatDocPartExecutor;
+        commentProcessorRegistry.registerCommentProcessor(IRepeatDocPartProcessor.class, new RepeatDocPartProcessor(config, this::stampDocPart, docPartExecutor));
+        commentProcessorRegistry.registerCommentProcessor(IDisplayIfProcessor.class, new DisplayIfProcessor());
+        commentProcessorRegistry.registerCommentProcessor(IReplaceWithProcessor.class, new ReplaceWithProcessor(config));
+        for (Map.Entry<Class<?>, Supplier<? extends ICommentProcessor>> entry : config.getCommentProcessors().entrySet()) {
+            commentProcessorRegistry.registerCommentProcessor(entry.getKey(), entry.getValue().get());
+        }
+        sharedCommentProcessorLocks = getLocks(config.getSharedCommentProcessors());
+    }
+
+    /**
+     * Orders the given comment processors by identity hash code, so that all sessions lock them in the same order
+     * and cannot deadlock each other. Distinct processors with the same hash code are rare, but their order is
+     * undefined, so in that case the tie lock is taken first.
+     */
+    private static List<Object> getLocks(List<ICommentProcessor> sharedCommentProcessors) {
+        List<Object> locks = new ArrayList<>(sharedCommentProcessors);
+        locks.sort(Comparator.comparingInt(System::identityHashCode));
+        for (int i = 1; i < locks.size(); i++) {
+            if (System.identityHashCode(locks.get(i - 1)) == System.identityHashCode(locks.get(i))) {
+                locks.add(0, TIE_LOCK);
+                break;
+            }
+        }
+        return locks;
+    }
+
+    private ExpressionResolver createExpressionResolver() {
+        ExpressionResolver expressionResolver = new ExpressionResolver(config.getEvaluationContextConfigurer(), expressionCache, config.getSpelCompilerMode());
+        config.getExpressionFunctions().forEach(expressionResolver::exposeInterface);
+        return expressionResolver;
+    }
+
+    /**
+     * Processes the comments and replaces the expressions of the whole document. Sessions using the same comment
+     * processor instance are run one at a time, since the instance keeps the state of the session (e.g. the current
+     * paragraph and the changes to commit) and may be added to several configurations. Sessions using only comment
+     * processors created per session take no lock at all.
+     */
+    void stamp(WordprocessingMLPackage document, T contextRoot) {
+        stampLocked(0, document, contextRoot);
+    }
+
+    private void stampLocked(int lockIndex, WordprocessingMLPackage document, T contextRoot) {
+        if (lockIndex == sharedCommentProcessorLocks.size()) {
+            stampDocument(document, contextRoot);
+            return;
+        }
+        synchronized (sharedCommentProcessorLocks.get(lockIndex)) {
+            stampLocked(lockIndex + 1, document, contextRoot);
+        }
+    }
+
+    private void stampDocument(WordprocessingMLPackage document, T contextRoot) {
+        try {
+            commentProcessorRegistry.runProcessors(document, contextRoot);
+            placeholderReplacer.resolveExpressions(document, contextRoot);
+        } finally {
+            // comment processors registered as instances outlive the session
+            commentProcessorRegistry.reset();
+        }
+    }
+
+    /**
+     * Processes the comments and replaces the expressions within the given content of the document.
+     */
+    void stamp(WordprocessingMLPackage document, ContentAccessor content, T contextRoot) {
+        try {
+            commentProcessorRegistry.runProcessors(document, content, contextRoot);
+            placeholderReplacer.resolveExpressions(document, content, contextRoot);
+        } finally {
+            commentProcessorRegistry.reset();
+        }
+    }
+
+    /**
+     * Stamps a repeated part of a document against one of the objects of the repetition. The part gets a session of
+     * its own, since the comment processors of this session are still busy with the surrounding document. Nested
+     * repetitions are stamped on the calling thread, so that a part waiting for its nested parts cannot block all
+     * threads of the executor.
+     */
+    private void stampDocPart(WordprocessingMLPackage document, ContentAccessor content, Object contextRoot) {
+        new StampingSession<>(config, typeResolverRegistry, expressionCache, null).stamp(document, content, contextRoot);
+    }
+}
@@ -0,0 +1,112 @@
+package org.wickedsource.docxstamper.el;
+
+import org.springframework.expression.Expression;
+import org.wickedsource.docxstamper.util.BoundedCache;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded, thread-safe cache of parsed expressions keyed by their expression string. Templates usually evaluate the
+ * same few expressions over and over (once per repeated row and once per document), so parsing each of them only once
+ * saves a lot of work. Lookups take no lock, so that threads stamping documents concurrently do not contend on it;
+ * eviction is approximate, see {@link BoundedCache}.
+ */
+public class ExpressionCache {
+
+    /**
+     * Decides which entry is evicted when the cache is full.
+     */
+    public enum EvictionPolicy {
+        /**
+         * Evicts the expression that has not been used for the longest time.
+         */
+        LEAST_RECENTLY_USED,
+        /**
+         * Evicts the expression that has been added to the cache first.
+         */
+        FIRST_IN_FIRST_OUT
+    }
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final BoundedCache<String, Expression> expressions;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    public ExpressionCache() {
+        this(DEFAULT_MAXIMUM_SIZE, EvictionPolicy.LEAST_RECENTLY_USED);
+    }
+
+    /**
+     * @param maximumSize    the maximum number of expressions kept in the cache. 0 disables caching.
+     * @param evictionPolicy the policy deciding which expression is evicted when the cache is full.
+     */
+    public ExpressionCache(int maximumSize, EvictionPolicy evictionPolicy) {
+        this.expressions = new BoundedCache<>(maximumSize, evictionPolicy == EvictionPolicy.LEAST_RECENTLY_USED);
+    }
+
+    /**
+     * Returns the cached expression for the given expression string, parsing and caching it on a miss.
+     *
+     * @param expressionString the expression to look up.
+     * @param parser           function used to parse the expression string on a cache miss.
+     * @return the parsed expression.
+     */
+    Expression get(String expressionString, Function<String, Expression> parser) {
+        Expression expression = expressions.get(expressionString);
+        if (expression != null) {
+            hitCount.increment();
+            return expression;
+        }
+        missCount.increment();
+        expression = parser.apply(expressionString);
+        expressions.put(expressionString, expression);
+        return expression;
+    }
+
+    /**
+     * Returns the cached expression for the given expression string without parsing it on a miss. The lookup is not
+     * counted as hit or miss.
+     *
+     * @param expressionString the expression to look up.
+     * @return the parsed expression, null if it is not in the cache.
+     */
+    public Expression getIfPresent(String expressionString) {
+        return expressions.get(expressionString);
+    }
+
+    /**
+     * @return the number of lookups that found an already parsed expression.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return the number of lookups that had to parse the expression.
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return the number of expressions currently held in the cache.
+     */
+    public int size() {
+        return expressions.size();
+    }
+
+    public int getMaximumSize() {
+        return expressions.getMaximumSize();
+    }
+
+    /**
+     * Removes all expressions from the cache. Hit and miss counts are kept.
+     */
+    public void clear() {
+        expressions.clear();
+    }
+}
@@ -0,0 +1,74 @@
+package org.wickedsource.docxstamper.el;
+
+/**
+ * Position of an expression like "${myObject.property}" or "#{myObject.property}" within a text, as found by
+ * {@link ExpressionUtil#findExpressions(String)}.
+ */
+public class ExpressionMatch {
+
+    private final String text;
+
+    private final int start;
+
+    private final int end;
+
+    ExpressionMatch(String text, int start, int end) {
+        this.text = text;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @return the index of the leading "$" or "#" within the text.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the index after the trailing "}" within the text.
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the length of the expression including the leading "${" or "#{" and the trailing "}".
+     */
+    public int getLength() {
+        return end - start;
+    }
+
+    /**
+     * @return true for variable expressions ("${...}"), false for processor expressions ("#{...}").
+     */
+    public boolean isVariableExpression() {
+        return text.charAt(start) == '$';
+    }
+
+    /**
+     * @return true for processor expressions ("#{...}"), false for variable expressions ("${...}").
+     */
+    public boolean isProcessorExpression() {
+        return text.charAt(start) == '#';
+    }
+
+    /**
+     * @return the expression including the leading "${" or "#{" and the trailing "}".
+     */
+    public String getExpression() {
+        return text.substring(start, end);
+    }
+
+    /**
+     * @return the expression without the leading "${" or "#{" and the trailing "}".
+     */
+    public String getBody() {
+        return text.substring(start + 2, end - 1);
+    }
+
+    @Override
+    public String toString() {
+        return getExpression();
+    }
+}
@@ -2,22 +2,54 @@ package org.wickedsource.docxstamper.el;
 
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.MethodResolver;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.wickedsource.docxstamper.api.EvaluationContextConfigurer;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class ExpressionResolver {
 
     private static final ExpressionUtil expressionUtil = new ExpressionUtil();
 
+    private final ExpressionParser parser;
+
     private final EvaluationContextConfigurer evaluationContextConfigurer;
 
+    private final ExpressionCache expressionCache;
+
+    private final InterfaceMethodResolver methodResolver = new InterfaceMethodResolver();
+
+    private StandardEvaluationContext evaluationContext;
+
     public ExpressionResolver() {
-        this.evaluationContextConfigurer = new NoOpEvaluationContextConfigurer();
+        this(new NoOpEvaluationContextConfigurer());
     }
 
     public ExpressionResolver(EvaluationContextConfigurer evaluationContextConfigurer) {
+        this(evaluationContextConfigurer, new ExpressionCache());
+    }
+
+    public ExpressionResolver(EvaluationContextConfigurer evaluationContextConfigurer, ExpressionCache expressionCache) {
+        this(evaluationContextConfigurer, expressionCache, SpelCompilerMode.OFF);
+    }
+
+    /**
+     * @param evaluationContextConfigurer configures the evaluation context used for all expressions.
+     * @param expressionCache             the cache for parsed (and possibly compiled) expressions.
+     * @param compilerMode                the mode of the SpEL compiler. With MIXED or IMMEDIATE, expressions that have
+     *                                    been evaluated a few times are compiled into bytecode. Since compiled expressions
+     *                                    are kept in the expression cache, they are reused across rows and documents.
+     */
+    public ExpressionResolver(EvaluationContextConfigurer evaluationContextConfigurer, ExpressionCache expressionCache, SpelCompilerMode compilerMode) {
         this.evaluationContextConfigurer = evaluationContextConfigurer;
+        this.expressionCache = expressionCache;
+        this.parser = new SpelExpressionParser(new SpelParserConfiguration(compilerMode, null));
     }
 
     /**
@@ -31,13 +63,54 @@ public class ExpressionResolver {
         if ((expressionString.startsWith("${") || expressionString.startsWith("#{")) && expressionString.endsWith("}")) {
             expressionString = expressionUtil.stripExpression(expressionString);
         }
-        ExpressionParser parser = new SpelExpressionParser();
-        // TODO create a custom evaluation context to allow skipping the use of a proxy to inject processor methods
-        // processors methods should be registered as methodaccessors instead of added as proxy method on the context
-        StandardEvaluationContext evaluationContext = new StandardEvaluationContext(contextRoot);
-        evaluationContextConfigurer.configureEvaluationContext(evaluationContext);
-        Expression expression = parser.parseExpression(expressionString);
-        return expression.getValue(evaluationContext);
+        Expression expression = expressionCache.get(expressionString, parser::parseExpression);
+        // the same context is used for all objects of a stamp, only the root object is swapped.
+        StandardEvaluationContext context = getEvaluationContext();
+        context.setRootObject(contextRoot);
+        return expression.getValue(context);
+    }
+
+    /**
+     * Makes the methods of the given interface available to all expressions evaluated by this resolver. When one of
+     * the methods is called on the root object of an expression, the call is delegated to the given implementation.
+     *
+     * @param interfaceClass the interface whose methods to expose.
+     * @param implementation the implementation that is called to evaluate invocations of the interface methods.
+     */
+    public void exposeInterface(Class<?> interfaceClass, Object implementation) {
+        methodResolver.exposeInterface(interfaceClass, implementation);
+    }
+
+    private StandardEvaluationContext getEvaluationContext() {
+        if (evaluationContext == null) {
+            evaluationContext = new StandardEvaluationContext();
+            // replaces the default reflective resolver, resolvers added by the configurer take precedence over it.
+            evaluationContext.setMethodResolvers(new ArrayList<>(Collections.singletonList(methodResolver)));
+            evaluationContextConfigurer.configureEvaluationContext(evaluationContext);
+            if (!evaluationContext.getMethodResolvers().contains(methodResolver)) {
+                // the configurer replaced the resolvers, the exposed interfaces must stay available nevertheless
+                List<MethodResolver> methodResolvers = new ArrayList<>(evaluationContext.getMethodResolvers());
+                methodResolvers.add(methodResolver);
+                evaluationContext.setMethodResolvers(methodResolvers);
+            }
+        }
+        return evaluationContext;
+    }
+
+    /**
+     * Discards the evaluation context used so far. The next expression will be evaluated in a new context that is
+     * configured by the EvaluationContextConfigurer again. Called once a stamping process has finished so that state
+     * stored in the context (e.g. variables) does not leak into the next one.
+     */
+    public void resetEvaluationContext() {
+        evaluationContext = null;
+    }
+
+    /**
+     * @return the cache holding the expressions parsed by this resolver.
+     */
+    public ExpressionCache getExpressionCache() {
+        return expressionCache;
     }
 
 }
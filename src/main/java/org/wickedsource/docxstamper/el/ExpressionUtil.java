@@ -1,9 +1,8 @@
 package org.wickedsource.docxstamper.el;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class ExpressionUtil {
 
@@ -14,7 +13,13 @@ public class ExpressionUtil {
      * @return a list of expressions (including the starting "${" and trailing "}").
      */
     public List<String> findVariableExpressions(String text) {
-        return findExpressions(text, "\\$\\{.*?\\}");
+        List<String> expressions = new ArrayList<>();
+        for (ExpressionMatch match : findExpressions(text)) {
+            if (match.isVariableExpression()) {
+                expressions.add(match.getExpression());
+            }
+        }
+        return expressions;
     }
 
     /**
@@ -24,25 +29,76 @@ public class ExpressionUtil {
      * @return a list of expressions (including the starting "#{" and trailing "}").
      */
     public List<String> findProcessorExpressions(String text) {
-        return findExpressions(text, "\\#\\{.*?\\}");
+        List<String> expressions = new ArrayList<>();
+        for (ExpressionMatch match : findExpressions(text)) {
+            if (match.isProcessorExpression()) {
+                expressions.add(match.getExpression());
+            }
+        }
+        return expressions;
     }
 
-    private List<String> findExpressions(String text, String expressionPattern) {
-        List<String> matches = new ArrayList<>();
-        if ("".equals(text) || text == null) {
-            return matches;
+    /**
+     * <p>
+     * Finds all variable expressions ("${...}") and processor expressions ("#{...}") in a single pass over the text.
+     * </p>
+     * <p>
+     * Braces within an expression are counted, so that an expression only ends with the "}" matching its opening
+     * brace, e.g. "${ {1, 2}.size() }" is found as a whole. Braces within string literals ('...' or "...") are
+     * ignored. An expression that is not closed until the end of the text is skipped.
+     * </p>
+     *
+     * @param text the text to find expressions in.
+     * @return the positions of the expressions, in the order they appear in the text.
+     */
+    public List<ExpressionMatch> findExpressions(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
         }
-        Pattern pattern = Pattern.compile(expressionPattern);
-        Matcher matcher = pattern.matcher(text);
+        List<ExpressionMatch> matches = new ArrayList<>();
+        int length = text.length();
         int index = 0;
-        while (matcher.find(index)) {
-            String match = matcher.group();
-            matches.add(match);
-            index = matcher.end();
+        while (index < length - 1) {
+            char c = text.charAt(index);
+            if ((c == '$' || c == '#') && text.charAt(index + 1) == '{') {
+                int end = findExpressionEnd(text, index + 2);
+                if (end > 0) {
+                    matches.add(new ExpressionMatch(text, index, end));
+                    index = end;
+                } else {
+                    // not closed, go on searching behind the opening brace
+                    index += 2;
+                }
+            } else {
+                index++;
+            }
         }
         return matches;
     }
 
+    /**
+     * @return the index after the "}" closing the expression whose body starts at the given index, -1 if the
+     * expression is not closed.
+     */
+    private int findExpressionEnd(String text, int bodyStart) {
+        int depth = 1;
+        int length = text.length();
+        for (int i = bodyStart; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = text.indexOf(c, i + 1);
+                if (i < 0) {
+                    return -1;
+                }
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Strips an expression of the leading "${" or "#{" and the trailing "}".
      *
@@ -53,9 +109,9 @@ public class ExpressionUtil {
         if (expression == null) {
             throw new IllegalArgumentException("Cannot strip NULL expression!");
         }
-        expression = expression.replaceAll("^\\$\\{", "").replaceAll("}$", "");
-        expression = expression.replaceAll("^#\\{", "").replaceAll("}$", "");
-        return expression;
+        int start = expression.startsWith("${") || expression.startsWith("#{") ? 2 : 0;
+        int end = expression.endsWith("}") ? expression.length() - 1 : expression.length();
+        return start < end ? expression.substring(start, end) : "";
     }
 
 }
@@ -0,0 +1,165 @@
+package org.wickedsource.docxstamper.el;
+
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.expression.AccessException;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.MethodExecutor;
+import org.springframework.expression.MethodResolver;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.support.ReflectiveMethodResolver;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Resolves methods on the root object of an expression as if the root object implemented a number of additional
+ * interfaces. Invocations of these methods are delegated to the implementation registered for the interface. This is
+ * how the methods of comment processors and of custom functions are made available to the expression language without
+ * having to wrap the root object into a proxy.
+ * </p>
+ * <p>
+ * Methods of other objects and methods of the root object that are not declared by one of the exposed interfaces are
+ * resolved reflectively, just like with the default resolver. Since this resolver is a ReflectiveMethodResolver,
+ * SpEL keeps caching the resolved methods of an expression as long as it is the only method resolver in use.
+ * </p>
+ */
+public class InterfaceMethodResolver extends ReflectiveMethodResolver {
+
+    /**
+     * Method name -> exposed interfaces declaring a method with that name, in the order they were exposed.
+     */
+    private final Map<String, List<ExposedInterface>> dispatchTable = new ConcurrentHashMap<>();
+
+    /**
+     * Exposed interface -> current implementation.
+     */
+    private final Map<Class<?>, Object> implementations = new ConcurrentHashMap<>();
+
+    /**
+     * Makes the methods of the given interface available on the root object of all expressions.
+     *
+     * @param interfaceClass the interface whose methods to expose.
+     * @param implementation the object that is called when one of the interface methods is invoked.
+     */
+    public void exposeInterface(Class<?> interfaceClass, Object implementation) {
+        if (!interfaceClass.isInstance(implementation)) {
+            throw new IllegalArgumentException(
+                    String.format("%s does not implement %s!", implementation, interfaceClass));
+        }
+        implementations.put(interfaceClass, implementation);
+        ExposedInterface exposedInterface = new ExposedInterface(interfaceClass, implementation);
+        for (Method method : exposedInterface.methods) {
+            dispatchTable.compute(method.getName(), (name, exposedInterfaces) -> {
+                List<ExposedInterface> result = new ArrayList<>();
+                if (exposedInterfaces != null) {
+                    for (ExposedInterface existing : exposedInterfaces) {
+                        // exposing an interface again replaces its previous implementation
+                        if (existing.interfaceClass != interfaceClass) {
+                            result.add(existing);
+                        }
+                    }
+                }
+                result.add(exposedInterface);
+                return Collections.unmodifiableList(result);
+            });
+        }
+    }
+
+    @Override
+    public MethodExecutor resolve(EvaluationContext context, Object targetObject, String name,
+                                  List<TypeDescriptor> argumentTypes) throws AccessException {
+        List<ExposedInterface> candidates = dispatchTable.get(name);
+        if (candidates != null && isRootObject(context, targetObject)) {
+            for (ExposedInterface candidate : candidates) {
+                MethodExecutor executor = candidate.resolve(context, name, argumentTypes);
+                if (executor != null) {
+                    return executor;
+                }
+            }
+        }
+        return super.resolve(context, targetObject, name, argumentTypes);
+    }
+
+    private boolean isRootObject(EvaluationContext context, Object targetObject) {
+        TypedValue rootObject = context.getRootObject();
+        return rootObject.getValue() != null && rootObject.getValue() == targetObject;
+    }
+
+    private static class ExposedInterface {
+
+        private final Class<?> interfaceClass;
+
+        private final Object implementation;
+
+        /**
+         * The methods of the interface, looked up once instead of each time a method is resolved.
+         */
+        private final Method[] methods;
+
+        private final ReflectiveMethodResolver interfaceMethodResolver;
+
+        ExposedInterface(Class<?> interfaceClass, Object implementation) {
+            this.interfaceClass = interfaceClass;
+            this.implementation = implementation;
+            this.methods = interfaceClass.getMethods();
+            // only considers the methods of the interface, not the other methods of the implementation
+            this.interfaceMethodResolver = new ReflectiveMethodResolver() {
+                @Override
+                protected Method[] getMethods(Class<?> type) {
+                    return methods;
+                }
+            };
+        }
+
+        MethodExecutor resolve(EvaluationContext context, String name, List<TypeDescriptor> argumentTypes) throws AccessException {
+            MethodExecutor executor = interfaceMethodResolver.resolve(context, implementation, name, argumentTypes);
+            return executor == null ? null : new ImplementationMethodExecutor(executor, interfaceClass);
+        }
+    }
+
+    /**
+     * <p>
+     * Invokes a resolved interface method on the implementation instead of the object the method was called on.
+     * </p>
+     * <p>
+     * SpEL caches the executor within the parsed expression and reuses it for any root object of the same type. Since
+     * parsed expressions may be shared by resolvers exposing different implementations (e.g. via a shared
+     * {@link ExpressionCache}), the implementation is looked up in the resolver of the evaluating context on each
+     * invocation. If that resolver does not expose the interface at all, the executor fails with an AccessException
+     * without cause, so that SpEL resolves the method again within the evaluating context.
+     * </p>
+     */
+    private static class ImplementationMethodExecutor implements MethodExecutor {
+
+        private final MethodExecutor delegate;
+
+        private final Class<?> interfaceClass;
+
+        ImplementationMethodExecutor(MethodExecutor delegate, Class<?> interfaceClass) {
+            this.delegate = delegate;
+            this.interfaceClass = interfaceClass;
+        }
+
+        @Override
+        public TypedValue execute(EvaluationContext context, Object target, Object... arguments) throws AccessException {
+            return delegate.execute(context, getImplementation(context), arguments);
+        }
+
+        private Object getImplementation(EvaluationContext context) throws AccessException {
+            for (MethodResolver resolver : context.getMethodResolvers()) {
+                if (resolver instanceof InterfaceMethodResolver) {
+                    Object implementation = ((InterfaceMethodResolver) resolver).implementations.get(interfaceClass);
+                    if (implementation != null) {
+                        return implementation;
+                    }
+                }
+            }
+            throw new AccessException(String.format("%s is not exposed to the evaluating context!", interfaceClass.getName()));
+        }
+    }
+}
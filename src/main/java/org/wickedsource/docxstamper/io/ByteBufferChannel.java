@@ -0,0 +1,83 @@
+package org.wickedsource.docxstamper.io;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A read-only channel over a buffer, used to read the central directory of a zip archive held in a buffer.
+ */
+class ByteBufferChannel implements SeekableByteChannel {
+
+    private final ByteBuffer buffer;
+
+    private boolean open = true;
+
+    /**
+     * @param buffer the buffer to read, from position 0 to its limit. The buffer itself is not modified.
+     */
+    ByteBufferChannel(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+        this.buffer.position(0);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws ClosedChannelException {
+        ensureOpen();
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int count = Math.min(dst.remaining(), buffer.remaining());
+        ByteBuffer source = buffer.duplicate();
+        source.limit(source.position() + count);
+        dst.put(source);
+        buffer.position(buffer.position() + count);
+        return count;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws ClosedChannelException {
+        ensureOpen();
+        return buffer.position();
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws ClosedChannelException {
+        ensureOpen();
+        buffer.position((int) Math.min(newPosition, buffer.limit()));
+        return this;
+    }
+
+    @Override
+    public long size() throws ClosedChannelException {
+        ensureOpen();
+        return buffer.limit();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
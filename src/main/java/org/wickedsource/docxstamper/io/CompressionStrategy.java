@@ -0,0 +1,67 @@
+package org.wickedsource.docxstamper.io;
+
+import org.docx4j.openpackaging.contenttype.ContentTypes;
+
+import java.util.zip.Deflater;
+
+/**
+ * Decides how each part of a stamped .docx document is compressed when it is written into the zip archive.
+ */
+@FunctionalInterface
+public interface CompressionStrategy {
+
+    /**
+     * Stores media that is compressed already and deflates all other parts with the default level.
+     */
+    CompressionStrategy DEFAULT = storeCompressedMedia(Deflater.DEFAULT_COMPRESSION);
+
+    /**
+     * @param partName    the name of the part within the zip archive, e.g. "word/document.xml".
+     * @param contentType the content type of the part, e.g. "image/png".
+     * @return the compression to write the part with.
+     */
+    ZipCompression getCompression(String partName, String contentType);
+
+    /**
+     * Creates a strategy that stores media that is compressed already (see isCompressedMedia(String)) and deflates
+     * all other parts, i.e. mostly XML, with the given level. Lower levels trade a larger document for less CPU time,
+     * e.g. when the document is only streamed to another service.
+     *
+     * @param level the deflate level of all other parts.
+     * @return the compression strategy.
+     */
+    static CompressionStrategy storeCompressedMedia(int level) {
+        ZipCompression deflated = ZipCompression.deflated(level);
+        return (partName, contentType) -> isCompressedMedia(contentType) ? ZipCompression.STORED : deflated;
+    }
+
+    /**
+     * Creates a strategy that writes all parts with the same compression.
+     *
+     * @param compression the compression of all parts.
+     * @return the compression strategy.
+     */
+    static CompressionStrategy always(ZipCompression compression) {
+        return (partName, contentType) -> compression;
+    }
+
+    /**
+     * @param contentType the content type of a part.
+     * @return true if parts of the given content type hardly get any smaller by deflating them.
+     */
+    static boolean isCompressedMedia(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        return contentType.equals(ContentTypes.IMAGE_PNG)
+                || contentType.equals(ContentTypes.IMAGE_JPEG)
+                || contentType.equals(ContentTypes.IMAGE_GIF)
+                || contentType.equals(ContentTypes.OFFICEDOCUMENT_OLE_OBJECT)
+                || contentType.startsWith("audio/")
+                || contentType.startsWith("video/")
+                // embedded .docx, .xlsx and .pptx documents are zip archives themselves
+                || contentType.equals("application/vnd.openxmlformats-officedocument.wordprocessingml.document")
+                || contentType.equals("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                || contentType.equals("application/vnd.openxmlformats-officedocument.presentationml.presentation");
+    }
+}
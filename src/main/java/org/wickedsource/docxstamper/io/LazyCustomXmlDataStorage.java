@@ -0,0 +1,129 @@
+package org.wickedsource.docxstamper.io;
+
+import org.apache.commons.io.IOUtils;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.io3.Load3;
+import org.docx4j.openpackaging.io3.stores.PartStore;
+import org.docx4j.model.datastorage.CustomXmlDataStorage;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * The content of a custom XML part that is only parsed once it is accessed. Until then, writing the content copies the
+ * original bytes of the part. Created by {@link LazyLoad}.
+ */
+public class LazyCustomXmlDataStorage implements CustomXmlDataStorage {
+
+    private final PartStore partStore;
+
+    private final String partName;
+
+    private CustomXmlDataStorage delegate;
+
+    LazyCustomXmlDataStorage(PartStore partStore, String partName) {
+        this.partStore = partStore;
+        this.partName = partName;
+    }
+
+    /**
+     * @return true if the content of the part has been parsed or replaced.
+     */
+    public synchronized boolean isLoaded() {
+        return delegate != null;
+    }
+
+    private synchronized CustomXmlDataStorage getDelegate() throws Docx4JException {
+        if (delegate == null) {
+            CustomXmlDataStorage storage = Load3.getCustomXmlDataStorageClass().factory();
+            try (InputStream in = partStore.loadPart(partName)) {
+                storage.setDocument(in);
+            } catch (IOException e) {
+                throw new Docx4JException(String.format("Failed to load part %s", partName), e);
+            }
+            delegate = storage;
+        }
+        return delegate;
+    }
+
+    private synchronized void setDelegate(CustomXmlDataStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CustomXmlDataStorage factory() {
+        return Load3.getCustomXmlDataStorageClass().factory();
+    }
+
+    @Override
+    public String xpathGetString(String xpath, String prefixMappings) throws Docx4JException {
+        return getDelegate().xpathGetString(xpath, prefixMappings);
+    }
+
+    @Override
+    public String cachedXPathGetString(String xpath, String prefixMappings) throws Docx4JException {
+        return getDelegate().cachedXPathGetString(xpath, prefixMappings);
+    }
+
+    @Override
+    public synchronized void discardCacheXPathObject() {
+        if (delegate != null) {
+            delegate.discardCacheXPathObject();
+        }
+    }
+
+    @Override
+    public List<Node> xpathGetNodes(String xpath, String prefixMappings) {
+        try {
+            return getDelegate().xpathGetNodes(xpath, prefixMappings);
+        } catch (Docx4JException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean setNodeValueAtXPath(String xpath, String value, String prefixMappings) throws Docx4JException {
+        return getDelegate().setNodeValueAtXPath(xpath, value, prefixMappings);
+    }
+
+    @Override
+    public void setDocument(InputStream is) throws Docx4JException {
+        CustomXmlDataStorage storage = factory();
+        storage.setDocument(is);
+        setDelegate(storage);
+    }
+
+    @Override
+    public void setDocument(Document doc) throws Docx4JException {
+        CustomXmlDataStorage storage = factory();
+        storage.setDocument(doc);
+        setDelegate(storage);
+    }
+
+    @Override
+    public void writeDocument(OutputStream os) throws Docx4JException {
+        if (isLoaded()) {
+            getDelegate().writeDocument(os);
+            return;
+        }
+        try (InputStream in = partStore.loadPart(partName)) {
+            IOUtils.copy(in, os);
+        } catch (IOException e) {
+            throw new Docx4JException(String.format("Failed to copy part %s", partName), e);
+        }
+    }
+
+    @Override
+    public Document getDocument() throws Docx4JException {
+        return getDelegate().getDocument();
+    }
+
+    @Override
+    public String getXML() throws Docx4JException {
+        return getDelegate().getXML();
+    }
+}
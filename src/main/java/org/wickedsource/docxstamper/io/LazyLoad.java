@@ -0,0 +1,73 @@
+package org.wickedsource.docxstamper.io;
+
+import org.docx4j.openpackaging.contenttype.ContentTypeManager;
+import org.docx4j.openpackaging.contenttype.ContentTypes;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.exceptions.InvalidFormatException;
+import org.docx4j.openpackaging.io3.Load3;
+import org.docx4j.openpackaging.io3.stores.PartStore;
+import org.docx4j.openpackaging.parts.CustomXmlDataStoragePart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.relationships.RelationshipsPart;
+import org.docx4j.relationships.Relationship;
+
+/**
+ * <p>
+ * Loads a package from a part store without parsing parts that are not accessed.
+ * </p>
+ * <p>
+ * docx4j already unmarshals the JAXB parts of a package (document, styles, numbering, fonts, theme, glossary,
+ * ...) on first access only. Custom XML parts however are parsed while loading: docx4j tries to unmarshal each of them
+ * with JAXB to detect known kinds of custom XML, and falls back to a DOM document. This loader backs custom XML parts
+ * by a {@link LazyCustomXmlDataStorage} instead, which only parses the part once its content is accessed. Custom XML
+ * parts are recognized by their content type just as docx4j recognizes them, other parts are left to docx4j. As a
+ * consequence, custom XML parts are always loaded as plain {@link CustomXmlDataStoragePart}s, never as the more
+ * specific parts docx4j would detect (e.g. OpenDoPE or bibliography parts).
+ * </p>
+ */
+public class LazyLoad extends Load3 {
+
+    private final PartStore partStore;
+
+    /**
+     * @param partStore the part store to load the package from.
+     */
+    public LazyLoad(PartStore partStore) {
+        super(partStore);
+        this.partStore = partStore;
+    }
+
+    @Override
+    public Part getRawPart(ContentTypeManager ctm, String resolvedPartUri, Relationship rel, RelationshipsPart rp) throws Docx4JException {
+        if (!isCustomXml(ctm, resolvedPartUri)) {
+            // only custom XML parts are created here, all other parts are created once by docx4j
+            return super.getRawPart(ctm, resolvedPartUri, rel, rp);
+        }
+        Part part;
+        try {
+            part = ctm.getPart("/" + resolvedPartUri, rel);
+        } catch (Exception e) {
+            // let docx4j handle (and report) parts it does not recognize
+            return super.getRawPart(ctm, resolvedPartUri, rel, rp);
+        }
+        if (part instanceof CustomXmlDataStoragePart) {
+            ((CustomXmlDataStoragePart) part).setData(new LazyCustomXmlDataStorage(partStore, resolvedPartUri));
+            return part;
+        }
+        return super.getRawPart(ctm, resolvedPartUri, rel, rp);
+    }
+
+    /**
+     * docx4j creates a CustomXmlDataStoragePart (or its properties part) for each part of content type
+     * application/xml, whatever the relationship targeting it.
+     */
+    private static boolean isCustomXml(ContentTypeManager ctm, String resolvedPartUri) {
+        try {
+            return ContentTypes.OFFICEDOCUMENT_CUSTOMXML_DATASTORAGE.equals(ctm.getContentType(new PartName("/" + resolvedPartUri)));
+        } catch (InvalidFormatException e) {
+            // let docx4j handle (and report) invalid part names
+            return false;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.wickedsource.docxstamper.io;
+
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.io3.stores.PartStore;
+import org.docx4j.openpackaging.packages.OpcPackage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * A read-only source part store serving the content of parts that have been added to a document without loading
+ * them, e.g. images read from files only when the document is saved. All other parts are loaded from the original
+ * source part store of the document.
+ * </p>
+ * <p>
+ * Since binary parts that are not loaded read their content from the source part store of their package, adding a
+ * part with {@link #addPart(OpcPackage, String, PartSource)} is all that is needed: the part is saved by streaming its
+ * source into the target, and its content is read only if someone accesses it before.
+ * </p>
+ */
+public class OverlayPartStore extends ReadOnlyPartStore {
+
+    private final PartStore delegate;
+
+    private final Map<String, PartSource> parts = new ConcurrentHashMap<>();
+
+    private OverlayPartStore(PartStore delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Serves the content of the part with the given name from the given source, installing an OverlayPartStore as
+     * source part store of the package if it does not have one yet. Must be called while holding the lock of the
+     * package if parts are added concurrently.
+     *
+     * @param opcPackage the package the part has been added to.
+     * @param partName   the name of the part, without leading "/".
+     * @param source     the content of the part.
+     */
+    public static void addPart(OpcPackage opcPackage, String partName, PartSource source) {
+        PartStore partStore = opcPackage.getSourcePartStore();
+        OverlayPartStore overlay;
+        if (partStore instanceof OverlayPartStore) {
+            overlay = (OverlayPartStore) partStore;
+        } else {
+            overlay = new OverlayPartStore(partStore);
+            opcPackage.setSourcePartStore(overlay);
+        }
+        overlay.parts.put(partName, source);
+    }
+
+    /**
+     * @param partName the name of the part, without leading "/".
+     * @return the source of the part, null if the part is served by the original source part store.
+     */
+    public PartSource getPartSource(String partName) {
+        return parts.get(partName);
+    }
+
+    @Override
+    public InputStream loadPart(String partName) throws Docx4JException {
+        PartSource source = parts.get(partName);
+        if (source == null) {
+            return delegate == null ? null : delegate.loadPart(partName);
+        }
+        try {
+            return source.open();
+        } catch (IOException e) {
+            throw new Docx4JException(String.format("Failed to load part %s", partName), e);
+        }
+    }
+
+    @Override
+    public long getPartSize(String partName) throws Docx4JException {
+        PartSource source = parts.get(partName);
+        if (source == null) {
+            return delegate == null ? -1 : delegate.getPartSize(partName);
+        }
+        return source.getSize();
+    }
+
+    @Override
+    public void dispose() {
+        // the original source part store may be shared, e.g. by all documents of a CompiledTemplate
+    }
+}
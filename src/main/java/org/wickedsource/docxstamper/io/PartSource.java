@@ -0,0 +1,55 @@
+package org.wickedsource.docxstamper.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The content of a part that is not held in memory but opened from its source each time it is read, e.g. an image
+ * file. Size and CRC-32 checksum are known up front, so that the part can be streamed into an uncompressed zip entry
+ * without buffering it.
+ */
+public class PartSource {
+
+    private final IOSupplier<InputStream> content;
+
+    private final long size;
+
+    private final long crc;
+
+    /**
+     * @param content opens a new stream of the content each time the part is read.
+     * @param size    the size of the content in bytes.
+     * @param crc     the CRC-32 checksum of the content.
+     */
+    public PartSource(IOSupplier<InputStream> content, long size, long crc) {
+        this.content = content;
+        this.size = size;
+        this.crc = crc;
+    }
+
+    /**
+     * @return a new stream of the content, to be closed by the caller.
+     * @throws IOException in case the source could not be opened.
+     */
+    public InputStream open() throws IOException {
+        return content.get();
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getCrc() {
+        return crc;
+    }
+
+    /**
+     * Supplies a value that may have to be read first.
+     *
+     * @param <T> the type of the value.
+     */
+    @FunctionalInterface
+    public interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+}
@@ -0,0 +1,74 @@
+package org.wickedsource.docxstamper.io;
+
+import org.docx4j.openpackaging.contenttype.ContentTypeManager;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.exceptions.Docx4JRuntimeException;
+import org.docx4j.openpackaging.io3.stores.PartStore;
+import org.docx4j.openpackaging.parts.CustomXmlDataStoragePart;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.XmlPart;
+
+import java.io.OutputStream;
+
+/**
+ * A part store that only serves as source part store of a package. All methods saving a package throw a
+ * Docx4JException, renaming a part throws a Docx4JRuntimeException since PartStore.rename cannot throw a checked
+ * exception.
+ */
+abstract class ReadOnlyPartStore implements PartStore {
+
+    @Override
+    public void setSourcePartStore(PartStore partStore) {
+        // a source part store has no source itself
+    }
+
+    @Override
+    public void rename(PartName oldName, PartName newName) {
+        throw new Docx4JRuntimeException(getReadOnlyMessage());
+    }
+
+    @Override
+    public void setOutputStream(OutputStream finalDestination) throws Docx4JException {
+        throw readOnly();
+    }
+
+    @Override
+    public void saveContentTypes(ContentTypeManager ctm) throws Docx4JException {
+        throw readOnly();
+    }
+
+    @Override
+    public void saveJaxbXmlPart(JaxbXmlPart part) throws Docx4JException {
+        throw readOnly();
+    }
+
+    @Override
+    public void saveCustomXmlDataStoragePart(CustomXmlDataStoragePart part) throws Docx4JException {
+        throw readOnly();
+    }
+
+    @Override
+    public void saveXmlPart(XmlPart part) throws Docx4JException {
+        throw readOnly();
+    }
+
+    @Override
+    public void saveBinaryPart(Part part) throws Docx4JException {
+        throw readOnly();
+    }
+
+    @Override
+    public void finishSave() throws Docx4JException {
+        throw readOnly();
+    }
+
+    private Docx4JException readOnly() {
+        return new Docx4JException(getReadOnlyMessage());
+    }
+
+    private String getReadOnlyMessage() {
+        return String.format("%s is read-only, save the package into another part store!", getClass().getSimpleName());
+    }
+}
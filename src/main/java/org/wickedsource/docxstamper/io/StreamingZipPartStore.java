@@ -0,0 +1,275 @@
+package org.wickedsource.docxstamper.io;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.contenttype.ContentTypeManager;
+import org.docx4j.openpackaging.contenttype.ContentTypes;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.io3.stores.PartStore;
+import org.docx4j.openpackaging.parts.CustomXmlDataStoragePart;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.XmlPart;
+
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * <p>
+ * A write-only part store that saves a document into a zip archive, compressing each part as decided by a
+ * {@link CompressionStrategy}. Pass it to {@link org.docx4j.openpackaging.io3.Save} as target part store.
+ * </p>
+ * <p>
+ * Deflated parts are written straight into the target stream: XML parts are marshalled into the archive, and parts
+ * that were never loaded are copied from the source part store without being parsed. Only parts that are stored
+ * uncompressed are buffered, since their size and checksum have to be written before their content. The memory
+ * needed for saving thus depends on the largest stored part rather than the size of the whole document.
+ * </p>
+ * <p>
+ * If the entries of the template are given, parts that have not been loaded since the document was created from
+ * the template are copied as raw zip entries, i.e. without inflating and deflating them again. A part that has never
+ * been loaded cannot have been modified, so no further bookkeeping is needed.
+ * </p>
+ * <p>
+ * Parts served by an {@link OverlayPartStore} are streamed from their source even if they are stored uncompressed,
+ * since their size and checksum are known up front.
+ * </p>
+ * <p>
+ * Like docx4j's ZipPartStore, the target stream is closed once the document is saved.
+ * </p>
+ */
+public class StreamingZipPartStore implements PartStore {
+
+    private final CompressionStrategy compressionStrategy;
+
+    private final ZipArchive templateArchive;
+
+    private PartStore sourcePartStore;
+
+    private ZipArchiveOutputStream zip;
+
+    /**
+     * The names of the parts in the source part store, by the names they have been renamed to.
+     */
+    private final Map<String, String> renamedParts = new HashMap<>();
+
+    /**
+     * @param compressionStrategy decides how each part is compressed.
+     */
+    public StreamingZipPartStore(CompressionStrategy compressionStrategy) {
+        this(compressionStrategy, null);
+    }
+
+    /**
+     * @param compressionStrategy decides how each part is compressed.
+     * @param templateArchive     the archive of the template the document was created from, to copy the parts that
+     *                            have not been loaded from. Null to write all parts anew.
+     */
+    public StreamingZipPartStore(CompressionStrategy compressionStrategy, ZipArchive templateArchive) {
+        this.compressionStrategy = compressionStrategy;
+        this.templateArchive = templateArchive;
+    }
+
+    @Override
+    public void setSourcePartStore(PartStore sourcePartStore) {
+        this.sourcePartStore = sourcePartStore;
+    }
+
+    @Override
+    public InputStream loadPart(String partName) throws Docx4JException {
+        return getSourcePartStore().loadPart(getSourceName(partName));
+    }
+
+    @Override
+    public long getPartSize(String partName) throws Docx4JException {
+        return getSourcePartStore().getPartSize(getSourceName(partName));
+    }
+
+    /**
+     * Records the new name of a part that has not been saved yet. Its content is still read from the source part
+     * store under the old name, but written into the archive under the new one.
+     */
+    @Override
+    public void rename(PartName oldName, PartName newName) {
+        String sourceName = getSourceName(getEntryName(oldName));
+        String targetName = getEntryName(newName);
+        renamedParts.remove(getEntryName(oldName));
+        if (!sourceName.equals(targetName)) {
+            renamedParts.put(targetName, sourceName);
+        }
+    }
+
+    @Override
+    public void setOutputStream(OutputStream out) {
+        this.zip = new ZipArchiveOutputStream(out);
+    }
+
+    @Override
+    public void saveContentTypes(ContentTypeManager contentTypeManager) throws Docx4JException {
+        writeEntry("[Content_Types].xml", ContentTypes.APPLICATION_XML, contentTypeManager::marshal);
+    }
+
+    @Override
+    public void saveJaxbXmlPart(JaxbXmlPart part) throws Docx4JException {
+        String name = getEntryName(part);
+        if (part.isUnmarshalled()) {
+            writeEntry(name, part.getContentType(), part::marshal);
+        } else {
+            // the part has not been touched, so its original bytes are still valid
+            writeUntouchedEntry(name, part.getContentType());
+        }
+    }
+
+    @Override
+    public void saveCustomXmlDataStoragePart(CustomXmlDataStoragePart part) throws Docx4JException {
+        String name = getEntryName(part);
+        if (part.getData() instanceof LazyCustomXmlDataStorage && !((LazyCustomXmlDataStorage) part.getData()).isLoaded()) {
+            writeUntouchedEntry(name, part.getContentType());
+        } else {
+            writeEntry(name, part.getContentType(), out -> part.getData().writeDocument(out));
+        }
+    }
+
+    @Override
+    public void saveXmlPart(XmlPart part) throws Docx4JException {
+        writeEntry(getEntryName(part), part.getContentType(), out -> XmlUtils.getTransformerFactory().newTransformer()
+                .transform(new DOMSource(part.getDocument()), new StreamResult(out)));
+    }
+
+    @Override
+    public void saveBinaryPart(Part part) throws Docx4JException {
+        String name = getEntryName(part);
+        if (part instanceof BinaryPart && ((BinaryPart) part).isLoaded()) {
+            writeEntry(name, part.getContentType(), ((BinaryPart) part)::writeDataToOutputStream);
+        } else {
+            writeUntouchedEntry(name, part.getContentType());
+        }
+    }
+
+    @Override
+    public void finishSave() throws Docx4JException {
+        try {
+            zip.close();
+        } catch (IOException e) {
+            throw new Docx4JException("Failed to finish the zip archive", e);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        // nothing is kept after saving
+    }
+
+    private void writeUntouchedEntry(String name, String contentType) throws Docx4JException {
+        String sourceName = getSourceName(name);
+        if (templateArchive != null && templateArchive.contains(sourceName)) {
+            try {
+                templateArchive.copyTo(sourceName, name, zip);
+            } catch (IOException e) {
+                throw new Docx4JException(String.format("Failed to copy part %s", name), e);
+            }
+        } else if (getSourcePartStore() instanceof OverlayPartStore
+                && ((OverlayPartStore) getSourcePartStore()).getPartSource(sourceName) != null) {
+            writeSourceEntry(name, contentType, ((OverlayPartStore) getSourcePartStore()).getPartSource(sourceName));
+        } else {
+            writeEntry(name, contentType, out -> copyFromSource(sourceName, out));
+        }
+    }
+
+    private void writeSourceEntry(String name, String contentType, PartSource source) throws Docx4JException {
+        ZipCompression compression = compressionStrategy.getCompression(name, contentType);
+        if (compression.getMethod() != ZipEntry.STORED) {
+            writeEntry(name, contentType, out -> copyFromSource(getSourceName(name), out));
+            return;
+        }
+        try (InputStream in = source.open()) {
+            ZipArchiveEntry entry = new ZipArchiveEntry(name);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(source.getSize());
+            entry.setCompressedSize(source.getSize());
+            entry.setCrc(source.getCrc());
+            zip.putArchiveEntry(entry);
+            IOUtils.copy(in, zip);
+            zip.closeArchiveEntry();
+        } catch (IOException e) {
+            throw new Docx4JException(String.format("Failed to save part %s", name), e);
+        }
+    }
+
+    private void writeEntry(String name, String contentType, EntryWriter writer) throws Docx4JException {
+        try {
+            ZipCompression compression = compressionStrategy.getCompression(name, contentType);
+            ZipArchiveEntry entry = new ZipArchiveEntry(name);
+            if (compression.getMethod() == ZipEntry.STORED) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                // the checksum is computed while writing, so that the buffer is not copied for it
+                CheckedOutputStream checked = new CheckedOutputStream(buffer, new CRC32());
+                writer.write(checked);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(buffer.size());
+                entry.setCompressedSize(buffer.size());
+                entry.setCrc(checked.getChecksum().getValue());
+                zip.putArchiveEntry(entry);
+                buffer.writeTo(zip);
+            } else {
+                entry.setMethod(ZipEntry.DEFLATED);
+                zip.setLevel(compression.getLevel());
+                zip.putArchiveEntry(entry);
+                writer.write(zip);
+            }
+            zip.closeArchiveEntry();
+        } catch (Docx4JException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new Docx4JException(String.format("Failed to save part %s", name), e);
+        }
+    }
+
+    private void copyFromSource(String name, OutputStream out) throws Docx4JException, IOException {
+        try (InputStream in = getSourcePartStore().loadPart(name)) {
+            if (in == null) {
+                throw new Docx4JException(String.format("Part %s not found in the source part store", name));
+            }
+            IOUtils.copy(in, out);
+        }
+    }
+
+    private PartStore getSourcePartStore() throws Docx4JException {
+        if (sourcePartStore == null) {
+            throw new Docx4JException("part store has changed, and sourcePartStore not set");
+        }
+        return sourcePartStore;
+    }
+
+    private String getSourceName(String name) {
+        return renamedParts.getOrDefault(name, name);
+    }
+
+    private static String getEntryName(Part part) {
+        return getEntryName(part.getPartName());
+    }
+
+    private static String getEntryName(PartName partName) {
+        String name = partName.getName();
+        // part names are absolute, entry names are not
+        return name.startsWith("/") ? name.substring(1) : name;
+    }
+
+    @FunctionalInterface
+    private interface EntryWriter {
+        void write(OutputStream out) throws Exception;
+    }
+}
@@ -0,0 +1,180 @@
+package org.wickedsource.docxstamper.io;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * <p>
+ * A zip archive held in a buffer, e.g. a .docx template read into a byte array or a memory-mapped template file.
+ * Entries are inflated straight from the buffer when they are read, and can be copied into another archive as they
+ * are, without inflating and deflating them again.
+ * </p>
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ * </p>
+ */
+public class ZipArchive {
+
+    private final ByteBuffer archive;
+
+    private final Map<String, ZipArchiveEntry> entries = new HashMap<>();
+
+    /**
+     * @param archive the bytes of the zip archive. The array must not be modified afterwards.
+     * @throws IOException in case the bytes are not a valid zip archive.
+     */
+    public ZipArchive(byte[] archive) throws IOException {
+        this(ByteBuffer.wrap(archive));
+    }
+
+    /**
+     * @param archive the buffer containing the zip archive from position 0 to its limit. The buffer must not be
+     *                modified afterwards.
+     * @throws IOException in case the buffer does not contain a valid zip archive.
+     */
+    public ZipArchive(ByteBuffer archive) throws IOException {
+        this.archive = archive.asReadOnlyBuffer();
+        try (ZipFile zipFile = new ZipFile(new ByteBufferChannel(archive))) {
+            Enumeration<ZipArchiveEntry> zipEntries = zipFile.getEntries();
+            while (zipEntries.hasMoreElements()) {
+                ZipArchiveEntry entry = zipEntries.nextElement();
+                // the offset of the compressed data is only known once the local header has been read
+                if (entry.getDataOffset() >= 0) {
+                    entries.put(entry.getName(), entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps the given zip file into memory. The file is neither copied onto the heap nor kept open, the mapping stays
+     * valid until the archive is garbage collected. The file must not be modified while it is mapped.
+     *
+     * @param file the zip file to map.
+     * @return the archive backed by the mapped file.
+     * @throws IOException in case the file could not be mapped or is not a valid zip archive.
+     */
+    public static ZipArchive map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s is too large to be mapped!", file));
+            }
+            return new ZipArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @param name the name of an entry, e.g. "word/theme/theme1.xml".
+     * @return true if the archive contains an entry with the given name.
+     */
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * @param name the name of an entry.
+     * @return the uncompressed size of the entry, -1 if there is no such entry or its size is unknown.
+     */
+    public long getSize(String name) {
+        ZipArchiveEntry entry = entries.get(name);
+        return entry == null ? -1 : entry.getSize();
+    }
+
+    /**
+     * Opens an entry for reading. Its data is inflated while reading, straight from the archive buffer.
+     *
+     * @param name the name of the entry to read.
+     * @return the uncompressed content of the entry, null if there is no such entry.
+     * @throws IOException in case the entry is compressed with an unsupported method.
+     */
+    public InputStream open(String name) throws IOException {
+        ZipArchiveEntry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        InputStream raw = openRaw(entry);
+        switch (entry.getMethod()) {
+            case ZipEntry.STORED:
+                return raw;
+            case ZipEntry.DEFLATED:
+                // the inflater of a zip entry without zlib header may need an additional dummy byte of input
+                return new EntryInflaterInputStream(new SequenceInputStream(raw, new ByteArrayInputStream(new byte[1])));
+            default:
+                throw new IOException(String.format("Entry %s is compressed with unsupported method %d!", name, entry.getMethod()));
+        }
+    }
+
+    /**
+     * Copies the compressed data of an entry into the given archive, keeping its compression method and checksum.
+     *
+     * @param name   the name of the entry to copy.
+     * @param target the archive to add the entry to.
+     * @throws IOException in case the entry could not be written.
+     */
+    public void copyTo(String name, ZipArchiveOutputStream target) throws IOException {
+        copyTo(name, name, target);
+    }
+
+    /**
+     * Copies the compressed data of an entry into the given archive under another name, keeping its compression
+     * method and checksum.
+     *
+     * @param name       the name of the entry to copy.
+     * @param targetName the name of the entry in the target archive.
+     * @param target     the archive to add the entry to.
+     * @throws IOException in case the entry could not be written.
+     */
+    public void copyTo(String name, String targetName, ZipArchiveOutputStream target) throws IOException {
+        ZipArchiveEntry entry = entries.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException(String.format("Archive does not contain an entry %s!", name));
+        }
+        ZipArchiveEntry targetEntry = entry;
+        if (!name.equals(targetName)) {
+            targetEntry = new ZipArchiveEntry(targetName);
+            targetEntry.setMethod(entry.getMethod());
+            targetEntry.setTime(entry.getTime());
+            targetEntry.setCrc(entry.getCrc());
+            targetEntry.setSize(entry.getSize());
+            targetEntry.setCompressedSize(entry.getCompressedSize());
+        }
+        target.addRawArchiveEntry(targetEntry, openRaw(entry));
+    }
+
+    private InputStream openRaw(ZipArchiveEntry entry) {
+        ByteBuffer data = archive.duplicate();
+        data.position((int) entry.getDataOffset());
+        data.limit((int) (entry.getDataOffset() + entry.getCompressedSize()));
+        return new ByteBufferInputStream(data);
+    }
+
+    private static class EntryInflaterInputStream extends InflaterInputStream {
+
+        EntryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(true));
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            // only inflaters created by InflaterInputStream itself are released on close
+            inf.end();
+        }
+    }
+}
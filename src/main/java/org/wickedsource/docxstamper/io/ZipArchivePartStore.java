@@ -0,0 +1,110 @@
+package org.wickedsource.docxstamper.io;
+
+import org.apache.commons.io.IOUtils;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A read-only part store backed by a {@link ZipArchive}. In contrast to docx4j's ZipPartStore, the parts are not
+ * inflated onto the heap up front but each time they are loaded, straight from the archive buffer. Use it as source
+ * part store of a package, e.g. with {@link LazyLoad}, and save the package into another part store.
+ */
+public class ZipArchivePartStore extends ReadOnlyPartStore {
+
+    private final ZipArchive archive;
+
+    /**
+     * @param archive the archive to load the parts from.
+     */
+    public ZipArchivePartStore(ZipArchive archive) {
+        this.archive = archive;
+    }
+
+    @Override
+    public InputStream loadPart(String partName) throws Docx4JException {
+        try {
+            InputStream in = archive.open(partName);
+            return in == null ? null : new ResettableEntryInputStream(archive, partName, in);
+        } catch (IOException e) {
+            throw new Docx4JException(String.format("Failed to load part %s", partName), e);
+        }
+    }
+
+    @Override
+    public long getPartSize(String partName) {
+        return archive.getSize(partName);
+    }
+
+    @Override
+    public void dispose() {
+        // the archive is released once it is garbage collected
+    }
+
+    /**
+     * docx4j resets the streams of the parts it probes (e.g. custom XML parts) without marking them first, relying on
+     * them to start over like the ByteArrayInputStreams of its own part stores. Resetting this stream opens the entry
+     * again and skips to the marked position, so the part does not have to be inflated onto the heap for that.
+     */
+    private static class ResettableEntryInputStream extends FilterInputStream {
+
+        private final ZipArchive archive;
+
+        private final String name;
+
+        private long position;
+
+        private long markedPosition;
+
+        ResettableEntryInputStream(ZipArchive archive, String name, InputStream in) {
+            super(in);
+            this.archive = archive;
+            this.name = name;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = in.read(b, off, len);
+            if (count > 0) {
+                position += count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            markedPosition = position;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            in.close();
+            in = archive.open(name);
+            IOUtils.skipFully(in, markedPosition);
+            position = markedPosition;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.wickedsource.docxstamper.io;
+
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * The way a single part of a .docx document is written into the zip archive: either stored as is or deflated with a
+ * given compression level.
+ */
+public final class ZipCompression {
+
+    /**
+     * Stores the part without compressing it, e.g. for media that is compressed already.
+     */
+    public static final ZipCompression STORED = new ZipCompression(ZipEntry.STORED, Deflater.NO_COMPRESSION);
+
+    private final int method;
+
+    private final int level;
+
+    private ZipCompression(int method, int level) {
+        this.method = method;
+        this.level = level;
+    }
+
+    /**
+     * @param level the deflate level from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}, or
+     *              {@link Deflater#DEFAULT_COMPRESSION}.
+     * @return a compression deflating the part with the given level.
+     */
+    public static ZipCompression deflated(int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException(String.format("Invalid deflate level %d!", level));
+        }
+        return new ZipCompression(ZipEntry.DEFLATED, level);
+    }
+
+    /**
+     * @return {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}.
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the deflate level, only relevant if the method is {@link ZipEntry#DEFLATED}.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public String toString() {
+        return method == ZipEntry.STORED ? "STORED" : String.format("DEFLATED(%d)", level);
+    }
+}
@@ -2,23 +2,25 @@ package org.wickedsource.docxstamper.processor;
 
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.docx4j.wml.Comments;
+import org.docx4j.wml.ContentAccessor;
 import org.docx4j.wml.P;
 import org.docx4j.wml.R;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.expression.spel.SpelEvaluationException;
 import org.springframework.expression.spel.SpelParseException;
-import org.wickedsource.docxstamper.api.DocxStamperException;
 import org.wickedsource.docxstamper.api.UnresolvedExpressionException;
 import org.wickedsource.docxstamper.api.commentprocessor.ICommentProcessor;
+import org.wickedsource.docxstamper.el.ExpressionMatch;
 import org.wickedsource.docxstamper.el.ExpressionResolver;
 import org.wickedsource.docxstamper.el.ExpressionUtil;
-import org.wickedsource.docxstamper.proxy.ProxyBuilder;
-import org.wickedsource.docxstamper.proxy.ProxyException;
 import org.wickedsource.docxstamper.replace.PlaceholderReplacer;
+import org.wickedsource.docxstamper.util.CommentIndex;
 import org.wickedsource.docxstamper.util.CommentUtil;
 import org.wickedsource.docxstamper.util.CommentWrapper;
+import org.wickedsource.docxstamper.util.DocumentUtil;
 import org.wickedsource.docxstamper.util.ParagraphWrapper;
+import org.wickedsource.docxstamper.util.TextReplacement;
 import org.wickedsource.docxstamper.util.walk.BaseCoordinatesWalker;
 import org.wickedsource.docxstamper.util.walk.CoordinatesWalker;
 
@@ -53,12 +55,23 @@ public class CommentProcessorRegistry {
 
   public void setExpressionResolver(ExpressionResolver expressionResolver) {
     this.expressionResolver = expressionResolver;
+    for (ICommentProcessor processor : commentProcessors) {
+      expressionResolver.exposeInterface(commentProcessorInterfaces.get(processor), processor);
+    }
   }
 
+  /**
+   * Registers the given comment processor and exposes the methods of the given interface to the expressions
+   * evaluated by the expression resolver of this registry.
+   *
+   * @param interfaceClass   the interface implemented by the comment processor.
+   * @param commentProcessor the comment processor.
+   */
   public void registerCommentProcessor(Class<?> interfaceClass,
                                        ICommentProcessor commentProcessor) {
     this.commentProcessorInterfaces.put(commentProcessor, interfaceClass);
     this.commentProcessors.add(commentProcessor);
+    this.expressionResolver.exposeInterface(interfaceClass, commentProcessor);
   }
 
   /**
@@ -68,25 +81,47 @@ public class CommentProcessorRegistry {
    * registered.
    *
    * @param document    the docx document over which to run the registered ICommentProcessors.
-   * @param proxyBuilder a builder for a proxy around the context root object to customize its interface
+   * @param contextRoot the context root object against which the comment expressions are evaluated.
+   * @param <T>         type of the contextRoot object.
+   */
+  public <T> void runProcessors(final WordprocessingMLPackage document, final T contextRoot) {
+    List<P> paragraphs = DocumentUtil.extractElements(document, P.class);
+    runProcessors(document, CommentUtil.getComments(document), paragraphs, CommentIndex.forDocument(document, paragraphs), contextRoot);
+  }
+
+  /**
+   * Same as runProcessors(WordprocessingMLPackage, T) except that only the comments within the given content of the
+   * document are processed.
+   *
+   * @param document    the docx document containing the content.
+   * @param content     the content over which to run the registered ICommentProcessors.
+   * @param contextRoot the context root object against which the comment expressions are evaluated.
    * @param <T>         type of the contextRoot object.
    */
-  public <T> void runProcessors(final WordprocessingMLPackage document, final ProxyBuilder<T> proxyBuilder) {
-    final Map<BigInteger, CommentWrapper> comments = CommentUtil.getComments(document);
+  public <T> void runProcessors(final WordprocessingMLPackage document, final ContentAccessor content, final T contextRoot) {
+    List<P> paragraphs = DocumentUtil.extractElements(content, P.class);
+    runProcessors(document, CommentUtil.getComments(document, content), paragraphs, new CommentIndex(document, paragraphs), contextRoot);
+  }
+
+  private <T> void runProcessors(final WordprocessingMLPackage document,
+                                 final Map<BigInteger, CommentWrapper> comments,
+                                 final List<P> paragraphs,
+                                 final CommentIndex commentIndex,
+                                 final T contextRoot) {
     final List<CommentWrapper> proceedComments = new ArrayList<>();
 
-    CoordinatesWalker walker = new BaseCoordinatesWalker(document) {
+    CoordinatesWalker walker = new BaseCoordinatesWalker(paragraphs) {
 
       @Override
       protected void onParagraph(P paragraph) {
-        runProcessorsOnParagraphComment(document, comments, proxyBuilder, paragraph)
+        runProcessorsOnParagraphComment(document, comments, commentIndex, contextRoot, paragraph)
                 .ifPresent(proceedComments::add);
-        runProcessorsOnInlineContent(proxyBuilder, paragraph);
+        runProcessorsOnInlineContent(contextRoot, paragraph);
       }
 
       @Override
       protected void onRun(R run, P paragraph) {
-        runProcessorsOnRunComment(document, comments, proxyBuilder, paragraph, run)
+        runProcessorsOnRunComment(document, comments, commentIndex, contextRoot, paragraph, run)
                 .ifPresent(proceedComments::add);
       }
 
@@ -106,30 +141,31 @@ public class CommentProcessorRegistry {
    * Finds all processor expressions within the specified paragraph and tries
    * to evaluate it against all registered {@link ICommentProcessor}s.
    *
-   * @param proxyBuilder         a builder for a proxy around the context root object to customize its interface
+   * @param contextRoot          the context root object against which the expressions are evaluated.
    * @param paragraph            the paragraph to process.
    * @param <T>                  type of the context root object
    */
-  private <T> void runProcessorsOnInlineContent(ProxyBuilder<T> proxyBuilder,
+  private <T> void runProcessorsOnInlineContent(T contextRoot,
                                                 P paragraph) {
 
     ParagraphWrapper paragraphWrapper = new ParagraphWrapper(paragraph);
-    List<String> processorExpressions = expressionUtil
-            .findProcessorExpressions(paragraphWrapper.getText());
+    List<ExpressionMatch> expressions = expressionUtil.findExpressions(paragraphWrapper.getText());
+    List<TextReplacement> replacements = new ArrayList<>();
 
-    for (String processorExpression : processorExpressions) {
-      String strippedExpression = expressionUtil.stripExpression(processorExpression);
+    for (ExpressionMatch expression : expressions) {
+      if (!expression.isProcessorExpression()) {
+        continue;
+      }
+      String processorExpression = expression.getExpression();
+      String strippedExpression = expression.getBody();
 
       for (final ICommentProcessor processor : commentProcessors) {
-        Class<?> commentProcessorInterface = commentProcessorInterfaces.get(processor);
-        proxyBuilder.withInterface(commentProcessorInterface, processor);
         processor.setParagraph(paragraph);
       }
 
       try {
-        T contextRootProxy = proxyBuilder.build();
-        expressionResolver.resolveExpression(strippedExpression, contextRootProxy);
-        placeholderReplacer.replace(paragraphWrapper, processorExpression, null);
+        expressionResolver.resolveExpression(strippedExpression, contextRoot);
+        replacements.add(placeholderReplacer.createReplacement(paragraphWrapper, expression, null));
         logger.debug(String.format(
                 "Processor expression '%s' has been successfully processed by a comment processor.",
                 processorExpression));
@@ -142,10 +178,9 @@ public class CommentProcessorRegistry {
                   processorExpression, e.getMessage()));
           logger.trace("Reason for skipping processor expression: ", e);
         }
-      } catch (ProxyException e) {
-        throw new DocxStamperException("Could not create a proxy around context root object", e);
       }
     }
+    paragraphWrapper.replace(replacements);
   }
 
 
@@ -156,31 +191,33 @@ public class CommentProcessorRegistry {
    *
    * @param document             the word document.
    * @param comments             the comments within the document.
-   * @param proxyBuilder         a builder for a proxy around the context root object to customize its interface
+   * @param commentIndex         the index to look up the comment of the paragraph.
+   * @param contextRoot          the context root object against which the comment is evaluated.
    * @param paragraph            the paragraph whose comments to evaluate.
    * @param <T>                  the type of the context root object.
    */
   private <T> Optional<CommentWrapper> runProcessorsOnParagraphComment(final WordprocessingMLPackage document,
-                                                                       final Map<BigInteger, CommentWrapper> comments, ProxyBuilder<T> proxyBuilder,
-                                                                       P paragraph) {
-    Comments.Comment comment = CommentUtil.getCommentFor(paragraph, document);
-    return runCommentProcessors(document, comments, proxyBuilder, comment, paragraph, null);
+                                                                       final Map<BigInteger, CommentWrapper> comments, CommentIndex commentIndex,
+                                                                       T contextRoot, P paragraph) {
+    Comments.Comment comment = commentIndex.getCommentFor(paragraph);
+    return runCommentProcessors(document, comments, contextRoot, comment, paragraph, null);
   }
 
   private <T> Optional<CommentWrapper> runProcessorsOnRunComment(
           WordprocessingMLPackage document,
           Map<BigInteger, CommentWrapper> comments,
-          ProxyBuilder<T> proxyBuilder,
+          CommentIndex commentIndex,
+          T contextRoot,
           P paragraph, R run
   ) {
-    Comments.Comment comment = CommentUtil.getCommentAround(run, document);
-    return runCommentProcessors(document, comments, proxyBuilder, comment, paragraph, run);
+    Comments.Comment comment = commentIndex.getCommentAround(run);
+    return runCommentProcessors(document, comments, contextRoot, comment, paragraph, run);
   }
 
   private <T> Optional<CommentWrapper> runCommentProcessors(
           WordprocessingMLPackage document,
           Map<BigInteger, CommentWrapper> comments,
-          ProxyBuilder<T> proxyBuilder,
+          T contextRoot,
           Comments.Comment comment,
           P paragraph,
           R run
@@ -198,16 +235,13 @@ public class CommentProcessorRegistry {
     String commentString = CommentUtil.getCommentString(comment);
 
     for (final ICommentProcessor processor : commentProcessors) {
-      Class<?> commentProcessorInterface = commentProcessorInterfaces.get(processor);
-      proxyBuilder.withInterface(commentProcessorInterface, processor);
       processor.setParagraph(paragraph);
       processor.setCurrentRun(run);
       processor.setCurrentCommentWrapper(commentWrapper);
     }
 
     try {
-      T contextRootProxy = proxyBuilder.build();
-      expressionResolver.resolveExpression(commentString, contextRootProxy);
+      expressionResolver.resolveExpression(commentString, contextRoot);
       comments.remove(comment.getId()); // guarantee one-time processing
       logger.debug(
               String.format("Comment '%s' has been successfully processed by a comment processor.",
@@ -222,8 +256,6 @@ public class CommentProcessorRegistry {
                 commentString, e.getMessage()));
         logger.trace("Reason for skipping comment: ", e);
       }
-    } catch (ProxyException e) {
-      throw new DocxStamperException("Could not create a proxy around context root object", e);
     }
     return Optional.empty();
   }
@@ -0,0 +1,19 @@
+package org.wickedsource.docxstamper.processor.repeat;
+
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.ContentAccessor;
+
+/**
+ * Stamps a part of a document in place, i.e. processes the comments and replaces the expressions found within the
+ * given content without saving or reloading the document.
+ */
+public interface DocPartStamper {
+
+    /**
+     * @param document    the document containing the content, e.g. to look up comments and to add images to.
+     * @param content     the content to stamp.
+     * @param contextRoot the context root object against which the expressions within the content are evaluated.
+     */
+    void stamp(WordprocessingMLPackage document, ContentAccessor content, Object contextRoot);
+
+}
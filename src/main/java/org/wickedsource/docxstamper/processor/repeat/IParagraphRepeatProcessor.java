@@ -1,6 +1,8 @@
 package org.wickedsource.docxstamper.processor.repeat;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.BaseStream;
 
 public interface IParagraphRepeatProcessor {
 
@@ -11,4 +13,28 @@ public interface IParagraphRepeatProcessor {
      * @param objects the objects which serve as context root for expressions found in the template table row.
      */
     void repeatParagraph(List<Object> objects);
+
+    /**
+     * Same as {@link #repeatParagraph(List)}, except that the objects are pulled one at a time while the paragraphs
+     * are created, so that they do not have to be held in memory all at once.
+     *
+     * @param objects the objects which serve as context root for expressions found in the template paragraphs.
+     */
+    void repeatParagraph(Iterable<Object> objects);
+
+    /**
+     * Same as {@link #repeatParagraph(Iterable)} for an iterator, which is consumed while the paragraphs are created.
+     *
+     * @param objects the objects which serve as context root for expressions found in the template paragraphs.
+     */
+    void repeatParagraph(Iterator<Object> objects);
+
+    /**
+     * Same as {@link #repeatParagraph(Iterable)} for a stream, which is consumed while the paragraphs are created. The stream is
+     * not closed. The parameter is a BaseStream rather than a Stream, so that SpEL does not consider converting an
+     * array argument into a stream, which would make the call ambiguous with {@link #repeatParagraph(List)}.
+     *
+     * @param objects the objects which serve as context root for expressions found in the template paragraphs.
+     */
+    void repeatParagraph(BaseStream<?, ?> objects);
 }
@@ -1,6 +1,8 @@
 package org.wickedsource.docxstamper.processor.repeat;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.BaseStream;
 
 public interface IRepeatProcessor {
 
@@ -12,4 +14,28 @@ public interface IRepeatProcessor {
      */
     void repeatTableRow(List<Object> objects);
 
+    /**
+     * Same as {@link #repeatTableRow(List)}, except that the objects are pulled one at a time while the rows are
+     * created, so that they do not have to be held in memory all at once.
+     *
+     * @param objects the objects which serve as context root for expressions found in the template table row.
+     */
+    void repeatTableRow(Iterable<Object> objects);
+
+    /**
+     * Same as {@link #repeatTableRow(Iterable)} for an iterator, which is consumed while the rows are created.
+     *
+     * @param objects the objects which serve as context root for expressions found in the template table row.
+     */
+    void repeatTableRow(Iterator<Object> objects);
+
+    /**
+     * Same as {@link #repeatTableRow(Iterable)} for a stream, which is consumed while the rows are created. The stream is
+     * not closed. The parameter is a BaseStream rather than a Stream, so that SpEL does not consider converting an
+     * array argument into a stream, which would make the call ambiguous with {@link #repeatTableRow(List)}.
+     *
+     * @param objects the objects which serve as context root for expressions found in the template table row.
+     */
+    void repeatTableRow(BaseStream<?, ?> objects);
+
 }
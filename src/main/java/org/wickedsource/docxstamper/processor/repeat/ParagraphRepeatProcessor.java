@@ -17,13 +17,15 @@ import org.wickedsource.docxstamper.util.ParagraphUtil;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.BaseStream;
 
 public class ParagraphRepeatProcessor extends BaseCommentProcessor implements IParagraphRepeatProcessor {
 
     private static class ParagraphsToRepeat {
-        List<Object> data;
+        Iterator<Object> data;
         List<P> paragraphs;
     }
 
@@ -40,6 +42,22 @@ public class ParagraphRepeatProcessor extends BaseCommentProcessor implements IP
 
     @Override
     public void repeatParagraph(List<Object> objects) {
+        repeatParagraph(objects == null ? null : objects.iterator());
+    }
+
+    @Override
+    public void repeatParagraph(Iterable<Object> objects) {
+        repeatParagraph(objects == null ? null : objects.iterator());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void repeatParagraph(BaseStream<?, ?> objects) {
+        repeatParagraph(objects == null ? null : (Iterator<Object>) objects.iterator());
+    }
+
+    @Override
+    public void repeatParagraph(Iterator<Object> objects) {
 
         P paragraph = getParagraph();
         List<P> paragraphs = getParagraphsInsideComment(paragraph);
@@ -57,33 +75,44 @@ public class ParagraphRepeatProcessor extends BaseCommentProcessor implements IP
         for (Map.Entry<P, ParagraphsToRepeat> entry : pToRepeat.entrySet()) {
             P paragraph = entry.getKey();
             ParagraphsToRepeat paragraphsToRepeat = entry.getValue();
-            List<Object> expressionContexts = paragraphsToRepeat.data;
+            Iterator<Object> expressionContexts = paragraphsToRepeat.data;
 
-            List<P> paragraphsToAdd = new ArrayList<>();
+            Object parent = paragraph.getParent();
+            if (!(parent instanceof ContentAccessor)) {
+                continue;
+            }
+            List<Object> parentContent = ((ContentAccessor) parent).getContent();
+            int index = parentContent.indexOf(paragraph);
 
             if (expressionContexts == null) {
                 if (config.isReplaceNullValues() && config.getNullValuesDefault() != null) {
                     P nullReplacedParagraph = ParagraphUtil.create(config.getNullValuesDefault());
-                    paragraphsToAdd.add(nullReplacedParagraph);
+                    index = insert(parentContent, index, nullReplacedParagraph);
                 }
-            } else for (Object expressionContext : expressionContexts) {
+            } else while (expressionContexts.hasNext()) {
+                // the contexts are pulled one at a time, so that a lazy source never has to be held in memory at once
+                Object expressionContext = expressionContexts.next();
                 for (P paragraphToClone : paragraphsToRepeat.paragraphs) {
                     P pClone = XmlUtils.deepCopy(paragraphToClone);
                     placeholderReplacer.resolveExpressionsForParagraph(pClone, expressionContext, document);
-                    paragraphsToAdd.add(pClone);
+                    index = insert(parentContent, index, pClone);
                 }
             }
+            parentContent.removeAll(paragraphsToRepeat.paragraphs);
+        }
+    }
 
-            Object parent = paragraph.getParent();
-            if (parent instanceof ContentAccessor) {
-                ContentAccessor contentAccessor = (ContentAccessor) parent;
-                int index = contentAccessor.getContent().indexOf(paragraph);
-                if (index >= 0) {
-                    contentAccessor.getContent().addAll(index, paragraphsToAdd);
-                }
-                contentAccessor.getContent().removeAll(paragraphsToRepeat.paragraphs);
-            }
+    /**
+     * Inserts the paragraph at the given index, unless the index is negative.
+     *
+     * @return the index behind the inserted paragraph.
+     */
+    private static int insert(List<Object> content, int index, P paragraph) {
+        if (index < 0) {
+            return index;
         }
+        content.add(index, paragraph);
+        return index + 1;
     }
 
     @Override
@@ -2,38 +2,42 @@ package org.wickedsource.docxstamper.processor.repeat;
 
 import org.docx4j.XmlUtils;
 import org.docx4j.jaxb.Context;
-import org.docx4j.openpackaging.exceptions.Docx4JException;
-import org.docx4j.openpackaging.exceptions.InvalidFormatException;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
-import org.docx4j.openpackaging.parts.WordprocessingML.CommentsPart;
 import org.docx4j.wml.*;
 import org.jvnet.jaxb2_commons.ppp.Child;
-import org.wickedsource.docxstamper.DocxStamper;
 import org.wickedsource.docxstamper.DocxStamperConfiguration;
 import org.wickedsource.docxstamper.processor.BaseCommentProcessor;
 import org.wickedsource.docxstamper.util.CommentUtil;
 import org.wickedsource.docxstamper.util.CommentWrapper;
-import org.wickedsource.docxstamper.util.DocumentUtil;
 import org.wickedsource.docxstamper.util.ParagraphUtil;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.util.*;
-
-import org.springframework.util.CollectionUtils;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 public class RepeatDocPartProcessor extends BaseCommentProcessor implements IRepeatDocPartProcessor {
 
     private final DocxStamperConfiguration config;
 
+    private final DocPartStamper docPartStamper;
+
+    private final Executor executor;
+
     private Map<CommentWrapper, List<Object>> subContexts = new HashMap<>();
     private Map<CommentWrapper, List<Object>> repeatingElementsMap = new HashMap<>();
-    private Map<CommentWrapper, WordprocessingMLPackage> subTemplates = new HashMap<>();
     private Map<CommentWrapper, ContentAccessor> gcpMap = new HashMap<>();
     private final ObjectFactory objectFactory;
 
-    public RepeatDocPartProcessor(DocxStamperConfiguration config) {
+    /**
+     * @param config         the configuration of the stamping process.
+     * @param docPartStamper stamps each copy of the repeated part in place.
+     * @param executor       the executor to stamp the copies on concurrently, null to stamp them one after another.
+     */
+    public RepeatDocPartProcessor(DocxStamperConfiguration config, DocPartStamper docPartStamper, Executor executor) {
         this.config = config;
+        this.docPartStamper = docPartStamper;
+        this.executor = executor;
         this.objectFactory = Context.getWmlObjectFactory();
     }
 
@@ -51,23 +55,13 @@ public class RepeatDocPartProcessor extends BaseCommentProcessor implements IRep
         List<Object> repeatElements = getRepeatElements(currentCommentWrapper, gcp);
 
         if (repeatElements.size() > 0) {
-            try {
-                subContexts.put(currentCommentWrapper, contexts);
-                subTemplates.put(currentCommentWrapper, extractSubTemplate(currentCommentWrapper, repeatElements));
-                gcpMap.put(currentCommentWrapper, gcp);
-                repeatingElementsMap.put(currentCommentWrapper, repeatElements);
-            } catch (InvalidFormatException e) {
-                throw new RuntimeException(e);
-            }
+            CommentUtil.deleteComment(currentCommentWrapper); // for deep copy without comment
+            subContexts.put(currentCommentWrapper, contexts);
+            gcpMap.put(currentCommentWrapper, gcp);
+            repeatingElementsMap.put(currentCommentWrapper, repeatElements);
         }
     }
 
-    private WordprocessingMLPackage copyTemplate(WordprocessingMLPackage doc) throws Docx4JException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        doc.save(baos);
-        return WordprocessingMLPackage.load(new ByteArrayInputStream(baos.toByteArray()));
-    }
-
     @Override
     public void commitChanges(WordprocessingMLPackage document) {
         for (Map.Entry<CommentWrapper, List<Object>> entry : subContexts.entrySet()) {
@@ -75,7 +69,8 @@ public class RepeatDocPartProcessor extends BaseCommentProcessor implements IRep
             List<Object> expressionContexts = entry.getValue();
 
             // index changes after each replacement, so we need to get the insert index at the last moment.
-            List<Object> parentContent = gcpMap.get(commentWrapper).getContent();
+            ContentAccessor gcp = gcpMap.get(commentWrapper);
+            List<Object> parentContent = gcp.getContent();
             List<Object> repeatingElements = repeatingElementsMap.get(commentWrapper);
             int index = parentContent.indexOf(repeatingElements.get(0));
 
@@ -89,23 +84,13 @@ public class RepeatDocPartProcessor extends BaseCommentProcessor implements IRep
                 continue;
             }
 
-            for (Object subContext : expressionContexts) {
-                try {
-                    WordprocessingMLPackage subTemplate = copyTemplate(subTemplates.get(commentWrapper));
-                    DocxStamper<Object> stamper = new DocxStamper<>(config);
-                    ByteArrayOutputStream output = new ByteArrayOutputStream();
-                    stamper.stamp(subTemplate, subContext, output);
-                    WordprocessingMLPackage subDocument = WordprocessingMLPackage.load(new ByteArrayInputStream(output.toByteArray()));
-                    try {
-                        List<Object> changes = DocumentUtil.prepareDocumentForInsert(subDocument, document);
-                        parentContent.addAll(index, changes);
-                        index += changes.size();
-                    } catch (Exception e) {
-                        throw new RuntimeException("Unexpected error occured ! Skipping this comment", e);
-                    }
-                } catch (Docx4JException e) {
-                    throw new RuntimeException(e);
+            for (ContentAccessor subPart : stampSubParts(document, gcp, repeatingElements, expressionContexts)) {
+                List<Object> changes = subPart.getContent();
+                for (Object change : changes) {
+                    setParent(change, gcp);
                 }
+                parentContent.addAll(index, changes);
+                index += changes.size();
             }
             CommentUtil.deleteComment(commentWrapper);
             parentContent.removeAll(repeatingElements);
@@ -115,37 +100,84 @@ public class RepeatDocPartProcessor extends BaseCommentProcessor implements IRep
     @Override
     public void reset() {
         subContexts = new HashMap<>();
-        subTemplates = new HashMap<>();
         gcpMap = new HashMap<>();
         repeatingElementsMap = new HashMap<>();
     }
 
-    private WordprocessingMLPackage extractSubTemplate(CommentWrapper commentWrapper, List<Object> repeatElements) throws InvalidFormatException {
-        CommentUtil.deleteComment(commentWrapper); // for deep copy without comment
-
-        WordprocessingMLPackage document = WordprocessingMLPackage.createPackage();
+    /**
+     * Stamps a copy of the repeating elements for each of the given contexts, concurrently if an executor is set. If
+     * items fail, this method waits for all other items to finish before it throws the first failure, with the
+     * failures of the other items added as suppressed exceptions.
+     *
+     * @return the stamped copies in the order of the contexts.
+     */
+    private List<ContentAccessor> stampSubParts(WordprocessingMLPackage document, ContentAccessor gcp,
+                                                List<Object> repeatingElements, List<Object> expressionContexts) {
+        List<ContentAccessor> subParts = new ArrayList<>(expressionContexts.size());
+        if (executor == null || expressionContexts.size() < 2) {
+            for (Object subContext : expressionContexts) {
+                subParts.add(stampSubPart(document, gcp, repeatingElements, subContext));
+            }
+            return subParts;
+        }
 
-        CommentsPart commentsPart = new CommentsPart();
-        document.getMainDocumentPart().addTargetPart(commentsPart);
+        List<CompletableFuture<ContentAccessor>> futures = new ArrayList<>(expressionContexts.size());
+        try {
+            for (Object subContext : expressionContexts) {
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> stampSubPart(document, gcp, repeatingElements, subContext), executor));
+            }
+        } finally {
+            // no item may still change the document once this method has returned or thrown
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((result, e) -> null).join();
+        }
+        RuntimeException failure = null;
+        for (CompletableFuture<ContentAccessor> future : futures) {
+            try {
+                subParts.add(future.join());
+            } catch (CompletionException e) {
+                RuntimeException cause = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+                if (failure == null) {
+                    failure = cause;
+                } else if (failure != cause) {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return subParts;
+    }
 
-        document.getMainDocumentPart().getContent().addAll(repeatElements);
+    private ContentAccessor stampSubPart(WordprocessingMLPackage document, ContentAccessor gcp,
+                                         List<Object> repeatingElements, Object subContext) {
+        ContentAccessor subPart = copyRepeatingElements(gcp, repeatingElements);
+        docPartStamper.stamp(document, subPart, subContext);
+        return subPart;
+    }
 
-        Comments comments = objectFactory.createComments();
-        extractedSubComments(commentWrapper,comments);
-        commentsPart.setContents(comments);
+    /**
+     * Copies the repeating elements into a detached container of the same type as their parent, so that the copy can
+     * be stamped (including nested repetitions) before it is inserted into the document.
+     */
+    private ContentAccessor copyRepeatingElements(ContentAccessor gcp, List<Object> repeatingElements) {
+        ContentAccessor container = gcp instanceof Tc ? objectFactory.createTc() : objectFactory.createBody();
+        for (Object element : repeatingElements) {
+            Object copy = XmlUtils.deepCopy(element);
+            setParent(copy, container);
+            container.getContent().add(copy);
+        }
+        return container;
+    }
 
-        return document;
+    private static void setParent(Object element, Object parent) {
+        Object unwrapped = XmlUtils.unwrap(element);
+        if (unwrapped instanceof Child) {
+            ((Child) unwrapped).setParent(parent);
+        }
     }
 
-	private void extractedSubComments(CommentWrapper commentWrapper, Comments comments) {
-		for (CommentWrapper child : commentWrapper.getChildren()) {
-			comments.getComment().add(child.getComment());
-			if (CollectionUtils.isEmpty(child.getChildren())) {
-				continue;
-			}
-			extractedSubComments(child, comments);
-		}
-	}
     private static List<Object> getRepeatElements(CommentWrapper commentWrapper, ContentAccessor greatestCommonParent) {
         List<Object> repeatElements = new ArrayList<>();
         boolean startFound = false;
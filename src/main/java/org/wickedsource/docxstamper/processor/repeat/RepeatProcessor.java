@@ -16,14 +16,16 @@ import org.wickedsource.docxstamper.util.CommentUtil;
 import org.wickedsource.docxstamper.util.walk.DocumentWalker;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.stream.BaseStream;
 
 public class RepeatProcessor extends BaseCommentProcessor implements IRepeatProcessor {
 
     private final DocxStamperConfiguration config;
-    private Map<Tr, List<Object>> tableRowsToRepeat = new HashMap<>();
+    private Map<Tr, Iterator<Object>> tableRowsToRepeat = new HashMap<>();
 
     private final PlaceholderReplacer<Object> placeholderReplacer;
 
@@ -55,9 +57,9 @@ public class RepeatProcessor extends BaseCommentProcessor implements IRepeatProc
     }
 
     private void repeatRows(final WordprocessingMLPackage document) {
-        for (Entry<Tr, List<Object>> entry : tableRowsToRepeat.entrySet()) {
+        for (Entry<Tr, Iterator<Object>> entry : tableRowsToRepeat.entrySet()) {
             Tr row = entry.getKey();
-            List<Object> expressionContexts = entry.getValue();
+            Iterator<Object> expressionContexts = entry.getValue();
             if (expressionContexts == null) {
                 if (config.isReplaceNullValues() && config.getNullValuesDefault() != null) {
                     Tr rowClone = XmlUtils.deepCopy(row);
@@ -66,7 +68,9 @@ public class RepeatProcessor extends BaseCommentProcessor implements IRepeatProc
                     walker.walk();
                     ((Tbl) row.getParent()).getContent().add(rowClone);
                 }
-            } else for (Object expressionContext : expressionContexts) {
+            } else while (expressionContexts.hasNext()) {
+                // the contexts are pulled one at a time, so that a lazy source never has to be held in memory at once
+                Object expressionContext = expressionContexts.next();
                 Tr rowClone = XmlUtils.deepCopy(row);
                 DocumentWalker walker = new ParagraphResolverDocumentWalker(rowClone, expressionContext, document, this.placeholderReplacer);
                 walker.walk();
@@ -78,6 +82,22 @@ public class RepeatProcessor extends BaseCommentProcessor implements IRepeatProc
 
     @Override
     public void repeatTableRow(List<Object> objects) {
+        repeatTableRow(objects == null ? null : objects.iterator());
+    }
+
+    @Override
+    public void repeatTableRow(Iterable<Object> objects) {
+        repeatTableRow(objects == null ? null : objects.iterator());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void repeatTableRow(BaseStream<?, ?> objects) {
+        repeatTableRow(objects == null ? null : (Iterator<Object>) objects.iterator());
+    }
+
+    @Override
+    public void repeatTableRow(Iterator<Object> objects) {
         P paragraph = getParagraph();
 
         Object cell = paragraph.getParent();
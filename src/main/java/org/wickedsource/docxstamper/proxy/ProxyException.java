@@ -1,9 +0,0 @@
-package org.wickedsource.docxstamper.proxy;
-
-public class ProxyException extends Exception {
-
-    public ProxyException(Throwable cause) {
-        super(cause);
-    }
-
-}
@@ -3,24 +3,25 @@ package org.wickedsource.docxstamper.replace;
 import org.docx4j.jaxb.Context;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.docx4j.wml.Br;
+import org.docx4j.wml.ContentAccessor;
 import org.docx4j.wml.P;
 import org.docx4j.wml.R;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.expression.spel.SpelEvaluationException;
 import org.springframework.expression.spel.SpelParseException;
-import org.wickedsource.docxstamper.api.DocxStamperException;
 import org.wickedsource.docxstamper.api.typeresolver.ITypeResolver;
 import org.wickedsource.docxstamper.api.typeresolver.TypeResolverRegistry;
+import org.wickedsource.docxstamper.el.ExpressionMatch;
 import org.wickedsource.docxstamper.el.ExpressionResolver;
 import org.wickedsource.docxstamper.el.ExpressionUtil;
-import org.wickedsource.docxstamper.proxy.ProxyBuilder;
-import org.wickedsource.docxstamper.proxy.ProxyException;
 import org.wickedsource.docxstamper.util.ParagraphWrapper;
 import org.wickedsource.docxstamper.util.RunUtil;
+import org.wickedsource.docxstamper.util.TextReplacement;
 import org.wickedsource.docxstamper.util.walk.BaseCoordinatesWalker;
 import org.wickedsource.docxstamper.util.walk.CoordinatesWalker;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class PlaceholderReplacer<T> {
@@ -91,40 +92,58 @@ public class PlaceholderReplacer<T> {
      * Finds expressions in a document and resolves them against the specified context object. The expressions in the
      * document are then replaced by the resolved values.
      *
-     * @param document     the document in which to replace all expressions.
-     * @param proxyBuilder builder for a proxy around the context root to customize its interface
+     * @param document          the document in which to replace all expressions.
+     * @param expressionContext the context root object against which the expressions are resolved.
      */
-    public void resolveExpressions(final WordprocessingMLPackage document, ProxyBuilder<T> proxyBuilder) {
-        try {
-            final T expressionContext = proxyBuilder.build();
-            CoordinatesWalker walker = new BaseCoordinatesWalker(document) {
-                @Override
-                protected void onParagraph(P paragraph) {
-                    resolveExpressionsForParagraph(paragraph, expressionContext, document);
-                }
-            };
-            walker.walk();
-        } catch (ProxyException e) {
-            throw new DocxStamperException("could not create proxy around context root!", e);
-        }
+    public void resolveExpressions(final WordprocessingMLPackage document, final T expressionContext) {
+        CoordinatesWalker walker = new BaseCoordinatesWalker(document) {
+            @Override
+            protected void onParagraph(P paragraph) {
+                resolveExpressionsForParagraph(paragraph, expressionContext, document);
+            }
+        };
+        walker.walk();
+    }
+
+    /**
+     * Same as resolveExpressions(WordprocessingMLPackage, T) except that only the expressions within the given content
+     * of the document are resolved.
+     *
+     * @param document          the document containing the content.
+     * @param content           the content in which to replace all expressions.
+     * @param expressionContext the context root object against which the expressions are resolved.
+     */
+    public void resolveExpressions(final WordprocessingMLPackage document, ContentAccessor content, final T expressionContext) {
+        CoordinatesWalker walker = new BaseCoordinatesWalker(content) {
+            @Override
+            protected void onParagraph(P paragraph) {
+                resolveExpressionsForParagraph(paragraph, expressionContext, document);
+            }
+        };
+        walker.walk();
     }
 
     @SuppressWarnings("unchecked")
     public void resolveExpressionsForParagraph(P p, T expressionContext, WordprocessingMLPackage document) {
         ParagraphWrapper paragraphWrapper = new ParagraphWrapper(p);
-        List<String> placeholders = expressionUtil.findVariableExpressions(paragraphWrapper.getText());
-        for (String placeholder : placeholders) {
+        List<ExpressionMatch> expressions = expressionUtil.findExpressions(paragraphWrapper.getText());
+        List<TextReplacement> replacements = new ArrayList<>();
+        for (ExpressionMatch expression : expressions) {
+            if (!expression.isVariableExpression()) {
+                continue;
+            }
+            String placeholder = expression.getExpression();
             try {
-                Object replacement = expressionResolver.resolveExpression(placeholder, expressionContext);
+                Object replacement = expressionResolver.resolveExpression(expression.getBody(), expressionContext);
                 if (replacement != null) {
                     ITypeResolver resolver = typeResolverRegistry.getResolverForType(replacement.getClass());
                     Object replacementObject = resolver.resolve(document, replacement);
-                    replace(paragraphWrapper, placeholder, replacementObject);
+                    replacements.add(createReplacement(paragraphWrapper, expression, replacementObject));
                     logger.debug(String.format("Replaced expression '%s' with value provided by TypeResolver %s", placeholder, resolver.getClass()));
                 } else if (replaceNullValues) {
                     ITypeResolver resolver = typeResolverRegistry.getDefaultResolver();
                     Object replacementObject = resolver.resolve(document, nullValuesDefault);
-                    replace(paragraphWrapper, placeholder, replacementObject);
+                    replacements.add(createReplacement(paragraphWrapper, expression, replacementObject));
                     logger.debug(String.format("Replaced expression '%s' with value provided by TypeResolver %s", placeholder, resolver.getClass()));
                 }
             } catch (SpelEvaluationException | SpelParseException e) {
@@ -134,26 +153,51 @@ public class PlaceholderReplacer<T> {
                 logger.trace("Reason for skipping expression:", e);
 
                 if (isLeaveEmptyOnExpressionError()) {
-                    replace(paragraphWrapper, placeholder, null);
+                    replacements.add(createReplacement(paragraphWrapper, expression, null));
                 } else if (isReplaceUnresolvedExpressions()) {
-                    replace(paragraphWrapper, placeholder, unresolvedExpressionsDefaultValue);
+                    replacements.add(createReplacement(paragraphWrapper, expression, unresolvedExpressionsDefaultValue));
                 }
             }
         }
-        if (this.lineBreakPlaceholder != null) {
+        // all expressions are replaced at once, so that the runs of the paragraph are only recalculated once
+        paragraphWrapper.replace(replacements);
+        if (this.lineBreakPlaceholder != null && !this.lineBreakPlaceholder.isEmpty()) {
             replaceLineBreaks(paragraphWrapper);
         }
     }
 
     private void replaceLineBreaks(ParagraphWrapper paragraphWrapper) {
-        Br lineBreak = Context.getWmlObjectFactory().createBr();
-        R run = RunUtil.create(lineBreak);
-        while (paragraphWrapper.getText().contains(this.lineBreakPlaceholder)) {
-            replace(paragraphWrapper, this.lineBreakPlaceholder, run);
+        String text = paragraphWrapper.getText();
+        List<TextReplacement> lineBreaks = new ArrayList<>();
+        int index = text.indexOf(this.lineBreakPlaceholder);
+        while (index != -1) {
+            Br lineBreak = Context.getWmlObjectFactory().createBr();
+            R run = RunUtil.create(lineBreak);
+            RunUtil.applyParagraphStyle(paragraphWrapper.getParagraph(), run);
+            lineBreaks.add(new TextReplacement(index, this.lineBreakPlaceholder.length(), run));
+            index = text.indexOf(this.lineBreakPlaceholder, index + this.lineBreakPlaceholder.length());
         }
+        paragraphWrapper.replace(lineBreaks);
+    }
+
+    /**
+     * Creates the replacement of the given expression by the given object, to be applied to the paragraph together
+     * with other replacements via {@link ParagraphWrapper#replace(List)}.
+     *
+     * @param p                 the paragraph containing the expression.
+     * @param expression        the expression to replace.
+     * @param replacementObject the object replacing the expression, see replace(ParagraphWrapper, String, Object).
+     * @return the replacement.
+     */
+    public TextReplacement createReplacement(ParagraphWrapper p, ExpressionMatch expression, Object replacementObject) {
+        return new TextReplacement(expression.getStart(), expression.getLength(), toReplacementObject(p, replacementObject));
     }
 
     public void replace(ParagraphWrapper p, String placeholder, Object replacementObject) {
+        p.replace(placeholder, toReplacementObject(p, replacementObject));
+    }
+
+    private Object toReplacementObject(ParagraphWrapper p, Object replacementObject) {
         if (replacementObject == null) {
             replacementObject = RunUtil.create("");
         }
@@ -163,7 +207,7 @@ public class PlaceholderReplacer<T> {
         if (replacementObject instanceof R) {
             RunUtil.applyParagraphStyle(p.getParagraph(), (R) replacementObject);
         }
-        p.replace(placeholder, replacementObject);
+        return replacementObject;
     }
 
 }
@@ -0,0 +1,275 @@
+package org.wickedsource.docxstamper.replace.typeresolver.image;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.relationships.RelationshipsPart;
+import org.docx4j.relationships.Relationship;
+import org.wickedsource.docxstamper.io.OverlayPartStore;
+import org.wickedsource.docxstamper.io.PartSource;
+import org.wickedsource.docxstamper.util.BoundedCache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * <p>
+ * The image parts added to a document, indexed by a hash of their content. Adding an image whose content has already
+ * been added to the document returns the existing image part, so that the image is only embedded once into the .docx
+ * file and all inlines showing it reference the same relationship.
+ * </p>
+ * <p>
+ * PNG, JPEG and GIF images are added without probing them via a temporary file (see {@link ImageMetadata}). Their
+ * metadata is cached by content hash across documents, so that an image stamped into many documents is read once.
+ * </p>
+ */
+class DocumentImageParts {
+
+    private static final String USER_DATA_KEY = DocumentImageParts.class.getName();
+
+    private static final int METADATA_CACHE_SIZE = 1000;
+
+    /**
+     * Content hash -> metadata of the image, empty if the image is left to docx4j.
+     */
+    private static final BoundedCache<ByteBuffer, Optional<ImageMetadata>> metadataCache = new BoundedCache<>(METADATA_CACHE_SIZE, true);
+
+    private final Map<ByteBuffer, BinaryPartAbstractImage> parts = new HashMap<>();
+
+    /**
+     * Images -> their image part, so that an image inserted several times is read and hashed only once.
+     */
+    private final Map<Image, BinaryPartAbstractImage> images = new IdentityHashMap<>();
+
+    private DocumentImageParts() {
+    }
+
+    /**
+     * Returns the image part showing the given image within the given document, adding a new image part to the
+     * document if it does not contain an image with the same content yet.
+     *
+     * @param document the document to add the image to.
+     * @param bytes    the content of the image.
+     * @return the image part of the document with the given content.
+     * @throws Exception in case the image part could not be created.
+     */
+    static BinaryPartAbstractImage getOrCreate(WordprocessingMLPackage document, byte[] bytes) throws Exception {
+        ByteBuffer hash = hash(bytes);
+        return getOrCreate(document, hash, bytes, getMetadata(hash, bytes));
+    }
+
+    private static BinaryPartAbstractImage getOrCreate(WordprocessingMLPackage document, ByteBuffer hash, byte[] bytes, ImageMetadata metadata) throws Exception {
+        // parts of a document may be stamped concurrently (see DocxStamperConfiguration.setRepeatDocPartExecutor()),
+        // but adding a part to the package is not thread-safe
+        synchronized (document) {
+            DocumentImageParts imageParts = of(document);
+            BinaryPartAbstractImage imagePart = imageParts.parts.get(hash);
+            if (imagePart == null) {
+                imagePart = createImagePart(document, bytes, metadata);
+                imageParts.parts.put(hash, imagePart);
+            }
+            return imagePart;
+        }
+    }
+
+    /**
+     * <p>
+     * Same as getOrCreate(WordprocessingMLPackage, byte[]) except that an image inserted several times into the
+     * document is only hashed once, and an image that is not held in memory is only read once to compute its hash and
+     * checksum and to find its headers. Its image part is not loaded, the image is
+     * read from its source again when the document is saved (see {@link OverlayPartStore}). Images in other formats
+     * than PNG, JPEG and GIF are read into memory.
+     * </p>
+     * <p>
+     * If an image scaling is given, images with a higher resolution than needed for the size they are rendered at are
+     * downscaled before they are added. Such images are read into memory.
+     * </p>
+     *
+     * @param document the document to add the image to.
+     * @param image    the image to add.
+     * @param scaling  the scaling applied to the image, or null.
+     * @return the image part of the document with the content of the given image.
+     * @throws Exception in case the image could not be read or the image part could not be created.
+     */
+    static BinaryPartAbstractImage getOrCreate(WordprocessingMLPackage document, Image image, ImageScaling scaling) throws Exception {
+        synchronized (document) {
+            BinaryPartAbstractImage imagePart = of(document).images.get(image);
+            if (imagePart != null) {
+                return imagePart;
+            }
+        }
+        BinaryPartAbstractImage imagePart = image.isInMemory()
+                ? getOrCreateInMemory(document, image, scaling)
+                : getOrCreateFromSource(document, image, scaling);
+        synchronized (document) {
+            of(document).images.put(image, imagePart);
+        }
+        return imagePart;
+    }
+
+    private static BinaryPartAbstractImage getOrCreateInMemory(WordprocessingMLPackage document, Image image, ImageScaling scaling) throws Exception {
+        byte[] bytes = image.getImageBytes();
+        ByteBuffer hash = hash(bytes);
+        ImageMetadata metadata = getMetadata(hash, bytes);
+        BinaryPartAbstractImage imagePart = getOrCreateScaled(document, scaling, hash, metadata, () -> bytes, image.getMaxWidth());
+        return imagePart != null ? imagePart : getOrCreate(document, hash, bytes, metadata);
+    }
+
+    private static BinaryPartAbstractImage getOrCreateFromSource(WordprocessingMLPackage document, Image image, ImageScaling scaling) throws Exception {
+        SourceDigest digest = SourceDigest.read(image);
+        ImageMetadata metadata = digest.metadata;
+        BinaryPartAbstractImage imagePart = getOrCreateScaled(document, scaling, digest.hash, metadata, image::getImageBytes, image.getMaxWidth());
+        if (imagePart == null) {
+            imagePart = metadata == null
+                    ? getOrCreate(document, image.getImageBytes())
+                    : getOrCreateSourceImagePart(document, image, digest, metadata);
+        }
+        return imagePart;
+    }
+
+    private static BinaryPartAbstractImage getOrCreateSourceImagePart(WordprocessingMLPackage document, Image image, SourceDigest digest, ImageMetadata metadata) throws Exception {
+        synchronized (document) {
+            DocumentImageParts imageParts = of(document);
+            BinaryPartAbstractImage imagePart = imageParts.parts.get(digest.hash);
+            if (imagePart == null) {
+                imagePart = createSourceImagePart(document, image, digest, metadata);
+                imageParts.parts.put(digest.hash, imagePart);
+            }
+            return imagePart;
+        }
+    }
+
+    /**
+     * Returns the image part showing the downscaled image, null if the image is not downscaled.
+     */
+    private static BinaryPartAbstractImage getOrCreateScaled(WordprocessingMLPackage document, ImageScaling scaling, ByteBuffer hash,
+                                                             ImageMetadata metadata, PartSource.IOSupplier<byte[]> content, Integer maxWidth) throws Exception {
+        if (scaling == null || metadata == null) {
+            return null;
+        }
+        ImageScaling.ScaledImage scaledImage = scaling.scale(document, hash, metadata, content, maxWidth);
+        if (scaledImage == null) {
+            return null;
+        }
+        ByteBuffer scaledHash = hash(scaledImage.getBytes());
+        synchronized (document) {
+            DocumentImageParts imageParts = of(document);
+            BinaryPartAbstractImage imagePart = imageParts.parts.get(scaledHash);
+            if (imagePart == null) {
+                imagePart = BinaryPartAbstractImage.createImagePart(document, document.getMainDocumentPart(), scaledImage.getBytes(), scaledImage.getMimeType());
+                // docx4j derives the extent of the inlines from the image info, so the part keeps the image info of
+                // the original image to be rendered at the same size
+                setImageInfo(imagePart, metadata);
+                imageParts.parts.put(scaledHash, imagePart);
+            }
+            return imagePart;
+        }
+    }
+
+    private static DocumentImageParts of(WordprocessingMLPackage document) {
+        DocumentImageParts imageParts = (DocumentImageParts) document.getUserData(USER_DATA_KEY);
+        if (imageParts == null) {
+            imageParts = new DocumentImageParts();
+            document.setUserData(USER_DATA_KEY, imageParts);
+        }
+        return imageParts;
+    }
+
+    private static BinaryPartAbstractImage createImagePart(WordprocessingMLPackage document, byte[] bytes, ImageMetadata metadata) throws Exception {
+        if (metadata == null) {
+            // other formats may have to be converted, which docx4j does via the filesystem
+            return BinaryPartAbstractImage.createImagePart(document, bytes);
+        }
+        BinaryPartAbstractImage imagePart = BinaryPartAbstractImage.createImagePart(document, document.getMainDocumentPart(), bytes, metadata.getMimeType());
+        setImageInfo(imagePart, metadata);
+        return imagePart;
+    }
+
+    /**
+     * Creates an image part the same way BinaryPartAbstractImage.createImagePart() does, except that its content is
+     * not set but served by the source of the image.
+     */
+    private static BinaryPartAbstractImage createSourceImagePart(WordprocessingMLPackage document, Image image, SourceDigest digest, ImageMetadata metadata) throws Exception {
+        Part sourcePart = document.getMainDocumentPart();
+        if (sourcePart.getRelationshipsPart() == null) {
+            RelationshipsPart.createRelationshipsPartForPart(sourcePart);
+        }
+        String proposedRelId = sourcePart.getRelationshipsPart().getNextId();
+        String extension = metadata.getMimeType().substring(metadata.getMimeType().indexOf('/') + 1);
+        BinaryPartAbstractImage imagePart = (BinaryPartAbstractImage) document.getContentTypeManager().newPartForContentType(
+                metadata.getMimeType(), BinaryPartAbstractImage.createImageName(document, sourcePart, proposedRelId, extension), null);
+        OverlayPartStore.addPart(document, imagePart.getPartName().getName().substring(1),
+                new PartSource(image::openStream, digest.size, digest.crc));
+        Relationship relationship = sourcePart.addTargetPart(imagePart, proposedRelId);
+        imagePart.getRels().add(relationship);
+        setImageInfo(imagePart, metadata);
+        return imagePart;
+    }
+
+    /**
+     * docx4j sets the image info of an image part while probing the image with ImageIO via the filesystem, and
+     * deprecates setting it from outside. Image parts created from our own metadata skip that probing, but
+     * createImageInline() still needs the image info to compute the extent of an inline, so this is the one place it
+     * is set.
+     */
+    @SuppressWarnings("deprecation")
+    private static void setImageInfo(BinaryPartAbstractImage imagePart, ImageMetadata metadata) {
+        imagePart.setImageInfo(metadata.toImageInfo());
+    }
+
+    private static ImageMetadata getMetadata(ByteBuffer hash, byte[] bytes) {
+        Optional<ImageMetadata> metadata = metadataCache.get(hash);
+        if (metadata == null) {
+            metadata = Optional.ofNullable(ImageMetadata.read(bytes));
+            metadataCache.put(hash, metadata);
+        }
+        return metadata.orElse(null);
+    }
+
+    private static ByteBuffer hash(byte[] bytes) throws NoSuchAlgorithmException {
+        return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    /**
+     * Hash, size, checksum and metadata of an image, computed while reading it from its source once.
+     */
+    private static class SourceDigest {
+
+        private final ByteBuffer hash;
+
+        private final long size;
+
+        private final long crc;
+
+        private final ImageMetadata metadata;
+
+        private SourceDigest(ByteBuffer hash, long size, long crc, ImageMetadata metadata) {
+            this.hash = hash;
+            this.size = size;
+            this.crc = crc;
+            this.metadata = metadata;
+        }
+
+        static SourceDigest read(Image image) throws IOException, NoSuchAlgorithmException {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            CRC32 crc = new CRC32();
+            try (CountingInputStream in = new CountingInputStream(new CheckedInputStream(new DigestInputStream(image.openStream(), sha), crc))) {
+                // the headers are read from the start of the stream, the rest is only read for the hash and checksum
+                ImageMetadata metadata = ImageMetadata.read(in);
+                IOUtils.consume(in);
+                return new SourceDigest(ByteBuffer.wrap(sha.digest()), in.getByteCount(), crc.getValue(), metadata);
+            }
+        }
+    }
+}
@@ -2,17 +2,32 @@ package org.wickedsource.docxstamper.replace.typeresolver.image;
 
 import org.apache.commons.io.IOUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Supplier;
 
 /**
+ * <p>
  * This class describes an image which will be inserted into document.
+ * </p>
+ * <p>
+ * Images created from a Path or a Supplier of InputStreams are not read into memory. They are read when they are
+ * inserted into a document, and streamed into the resulting .docx file when the document is saved. So an image that
+ * ends up not being inserted, e.g. because its paragraph is removed by a comment, is never read at all. The source
+ * must provide the same content until the document is saved.
+ * </p>
  */
 public class Image {
 
     private final byte[] imageBytes;
 
+    private final Supplier<InputStream> source;
+
     private String filename;
 
     private String altText;
@@ -26,6 +41,7 @@ public class Image {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         IOUtils.copy(in, out);
         this.imageBytes = out.toByteArray();
+        this.source = null;
     }
 
     /**
@@ -36,6 +52,7 @@ public class Image {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         IOUtils.copy(in, out);
         this.imageBytes = out.toByteArray();
+        this.source = null;
         this.maxWidth = maxWidth;
     }
 
@@ -44,6 +61,7 @@ public class Image {
      */
     public Image(byte[] imageBytes) {
         this.imageBytes = imageBytes;
+        this.source = null;
     }
 
     /**
@@ -52,6 +70,47 @@ public class Image {
      */
     public Image(byte[] imageBytes, Integer maxWidth) {
         this.imageBytes = imageBytes;
+        this.source = null;
+        this.maxWidth = maxWidth;
+    }
+
+    /**
+     * @param source - opens a new stream of the content of the image each time it is read
+     */
+    public Image(Supplier<InputStream> source) {
+        this.imageBytes = null;
+        this.source = source;
+    }
+
+    /**
+     * @param source - opens a new stream of the content of the image each time it is read
+     * @param maxWidth - max width of the image in twip
+     */
+    public Image(Supplier<InputStream> source, Integer maxWidth) {
+        this(source);
+        this.maxWidth = maxWidth;
+    }
+
+    /**
+     * @param path - file containing the image, read only when the image is inserted into a document
+     */
+    public Image(Path path) {
+        this(() -> {
+            try {
+                return Files.newInputStream(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        this.filename = path.getFileName().toString();
+    }
+
+    /**
+     * @param path - file containing the image, read only when the image is inserted into a document
+     * @param maxWidth - max width of the image in twip
+     */
+    public Image(Path path, Integer maxWidth) {
+        this(path);
         this.maxWidth = maxWidth;
     }
 
@@ -66,8 +125,46 @@ public class Image {
         return altText;
     }
 
+    /**
+     * Returns the content of the image. An image that is not held in memory is read from its source on each call.
+     *
+     * @return the content of the image.
+     */
     public byte[] getImageBytes() {
-        return imageBytes;
+        if (imageBytes != null) {
+            return imageBytes;
+        }
+        try (InputStream in = openStream()) {
+            return IOUtils.toByteArray(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return a new stream of the content of the image, to be closed by the caller.
+     * @throws IOException in case the source of the image could not be opened.
+     */
+    public InputStream openStream() throws IOException {
+        if (imageBytes != null) {
+            return new ByteArrayInputStream(imageBytes);
+        }
+        try {
+            InputStream in = source.get();
+            if (in == null) {
+                throw new IOException("The source of the image provided no content!");
+            }
+            return in;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return true if the content of the image is held in memory, false if it is read from its source when needed.
+     */
+    public boolean isInMemory() {
+        return imageBytes != null;
     }
 
     /**
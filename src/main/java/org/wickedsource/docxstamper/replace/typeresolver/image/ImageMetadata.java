@@ -0,0 +1,337 @@
+package org.wickedsource.docxstamper.replace.typeresolver.image;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.xmlgraphics.image.loader.ImageInfo;
+import org.apache.xmlgraphics.image.loader.ImageSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * The format, size, resolution and, for JPEG images, the EXIF orientation of a PNG, JPEG or GIF image, read from the
+ * headers of the image.
+ * </p>
+ * <p>
+ * docx4j probes images by writing them to a temporary file and loading them with its image-info detection. For the
+ * formats Word displays natively, the headers contain all information needed to embed the image, so the image parts
+ * can be created without touching the filesystem. Images without a resolution are assumed to have 72 dpi, just like
+ * docx4j does.
+ * </p>
+ */
+final class ImageMetadata {
+
+    static final double DEFAULT_RESOLUTION = 72;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private static final byte[] GIF87A_SIGNATURE = "GIF87a".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] GIF89A_SIGNATURE = "GIF89a".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] JFIF_IDENTIFIER = "JFIF\0".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] EXIF_IDENTIFIER = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    /**
+     * The orientation of an image whose pixels are stored as they are displayed.
+     */
+    static final int NORMAL_ORIENTATION = 1;
+
+    private final String mimeType;
+
+    private final int width;
+
+    private final int height;
+
+    private final double horizontalResolution;
+
+    private final double verticalResolution;
+
+    private final int orientation;
+
+    ImageMetadata(String mimeType, int width, int height, double horizontalResolution, double verticalResolution, int orientation) {
+        this.mimeType = mimeType;
+        this.width = width;
+        this.height = height;
+        this.horizontalResolution = horizontalResolution;
+        this.verticalResolution = verticalResolution;
+        this.orientation = orientation;
+    }
+
+    /**
+     * Reads the metadata of the given image.
+     *
+     * @param bytes the content of the image, or at least all of its headers.
+     * @return the metadata of the image, null if the image is not a PNG, JPEG or GIF image or its headers could not
+     * be read.
+     */
+    static ImageMetadata read(byte[] bytes) {
+        try {
+            return read(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            // cannot happen for an image in memory
+            return null;
+        }
+    }
+
+    /**
+     * Reads the metadata of the image from the given stream. The stream is only read up to the end of the headers,
+     * chunks and segments that do not matter are read past by their length without being held in memory, so that
+     * large EXIF, XMP or ICC segments do not hide the headers following them.
+     *
+     * @param in the content of the image.
+     * @return the metadata of the image, null if the image is not a PNG, JPEG or GIF image or its headers are
+     * truncated.
+     * @throws IOException in case the stream could not be read.
+     */
+    static ImageMetadata read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] signature = new byte[PNG_SIGNATURE.length];
+        try {
+            data.readFully(signature, 0, 2);
+            if ((signature[0] & 0xff) == 0xff && (signature[1] & 0xff) == 0xd8) {
+                return readJpeg(data);
+            }
+            data.readFully(signature, 2, GIF87A_SIGNATURE.length - 2);
+            if (startsWith(signature, GIF87A_SIGNATURE) || startsWith(signature, GIF89A_SIGNATURE)) {
+                return readGif(data);
+            }
+            data.readFully(signature, GIF87A_SIGNATURE.length, PNG_SIGNATURE.length - GIF87A_SIGNATURE.length);
+            if (startsWith(signature, PNG_SIGNATURE)) {
+                return readPng(data);
+            }
+            return null;
+        } catch (EOFException e) {
+            // truncated headers, leave the image to docx4j
+            return null;
+        }
+    }
+
+    private static ImageMetadata readPng(DataInputStream data) throws IOException {
+        // the IHDR chunk always comes first
+        int headerLength = data.readInt();
+        if (headerLength < 8) {
+            return null;
+        }
+        data.readInt();
+        int width = data.readInt();
+        int height = data.readInt();
+        IOUtils.skipFully(data, headerLength - 8 + 4);
+        double horizontalResolution = DEFAULT_RESOLUTION;
+        double verticalResolution = DEFAULT_RESOLUTION;
+        while (true) {
+            int length = data.readInt();
+            byte[] type = new byte[4];
+            data.readFully(type);
+            if (length < 0) {
+                return null;
+            }
+            String chunk = new String(type, StandardCharsets.US_ASCII);
+            if ("IDAT".equals(chunk) || "IEND".equals(chunk)) {
+                // the resolution has to be defined before the image data
+                return valid("image/png", width, height, horizontalResolution, verticalResolution, NORMAL_ORIENTATION);
+            }
+            int read = 0;
+            if ("pHYs".equals(chunk) && length >= 9) {
+                int horizontalDensity = data.readInt();
+                int verticalDensity = data.readInt();
+                // pixels per unit, the only defined unit is the meter
+                if (data.readByte() == 1) {
+                    horizontalResolution = horizontalDensity * 0.0254;
+                    verticalResolution = verticalDensity * 0.0254;
+                }
+                read = 9;
+            }
+            // the rest of the chunk and its checksum
+            IOUtils.skipFully(data, (long) length - read + 4);
+        }
+    }
+
+    private static ImageMetadata readJpeg(DataInputStream data) throws IOException {
+        double horizontalResolution = DEFAULT_RESOLUTION;
+        double verticalResolution = DEFAULT_RESOLUTION;
+        int orientation = NORMAL_ORIENTATION;
+        while (true) {
+            if (data.readUnsignedByte() != 0xff) {
+                return null;
+            }
+            int marker = data.readUnsignedByte();
+            while (marker == 0xff) {
+                // fill byte
+                marker = data.readUnsignedByte();
+            }
+            if (marker == 0x01 || marker >= 0xd0 && marker <= 0xd7) {
+                // markers without segment
+                continue;
+            }
+            if (marker == 0xda || marker == 0xd9) {
+                // start of scan or end of image without a frame header
+                return null;
+            }
+            // the length of a segment includes the length field
+            int length = data.readUnsignedShort() - 2;
+            if (length < 0) {
+                return null;
+            }
+            if (isStartOfFrame(marker)) {
+                data.readUnsignedByte();
+                int height = data.readUnsignedShort();
+                int width = data.readUnsignedShort();
+                return valid("image/jpeg", width, height, horizontalResolution, verticalResolution, orientation);
+            }
+            int read = 0;
+            if (marker == 0xe0 && length >= 12) {
+                // identifier, version, units and densities, followed by an optional thumbnail
+                byte[] segment = new byte[12];
+                data.readFully(segment);
+                read = segment.length;
+                int units = segment[7];
+                int horizontalDensity = readShort(segment, 8);
+                int verticalDensity = readShort(segment, 10);
+                // units 0 only defines the aspect ratio of the pixels
+                if (startsWith(segment, JFIF_IDENTIFIER) && (units == 1 || units == 2) && horizontalDensity > 0 && verticalDensity > 0) {
+                    double factor = units == 1 ? 1 : 2.54;
+                    horizontalResolution = horizontalDensity * factor;
+                    verticalResolution = verticalDensity * factor;
+                }
+            } else if (marker == 0xe1 && length >= EXIF_IDENTIFIER.length) {
+                // an APP1 segment is at most 64 KB, so it is read as a whole to follow the offsets of its TIFF structure
+                byte[] segment = new byte[length];
+                data.readFully(segment);
+                read = segment.length;
+                if (startsWith(segment, EXIF_IDENTIFIER)) {
+                    orientation = readExifOrientation(segment, EXIF_IDENTIFIER.length);
+                }
+            }
+            IOUtils.skipFully(data, length - read);
+        }
+    }
+
+    /**
+     * Reads the orientation tag from the first IFD of the TIFF structure an EXIF segment consists of.
+     *
+     * @return the orientation from 1 to 8, {@link #NORMAL_ORIENTATION} if the segment has no valid orientation.
+     */
+    private static int readExifOrientation(byte[] segment, int tiffOffset) {
+        if (segment.length < tiffOffset + 8) {
+            return NORMAL_ORIENTATION;
+        }
+        boolean littleEndian;
+        if (segment[tiffOffset] == 'I' && segment[tiffOffset + 1] == 'I') {
+            littleEndian = true;
+        } else if (segment[tiffOffset] == 'M' && segment[tiffOffset + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return NORMAL_ORIENTATION;
+        }
+        // offsets are relative to the TIFF header
+        long ifdOffset = tiffOffset + readTiffInt(segment, tiffOffset + 4, littleEndian);
+        if (ifdOffset + 2 > segment.length) {
+            return NORMAL_ORIENTATION;
+        }
+        int entryCount = readTiffShort(segment, (int) ifdOffset, littleEndian);
+        for (int i = 0; i < entryCount; i++) {
+            int entry = (int) ifdOffset + 2 + i * 12;
+            if (entry + 12 > segment.length) {
+                break;
+            }
+            if (readTiffShort(segment, entry, littleEndian) == EXIF_ORIENTATION_TAG) {
+                // a single SHORT value, stored in the first two bytes of the value field
+                int orientation = readTiffShort(segment, entry + 8, littleEndian);
+                return orientation >= 1 && orientation <= 8 ? orientation : NORMAL_ORIENTATION;
+            }
+        }
+        return NORMAL_ORIENTATION;
+    }
+
+    private static int readTiffShort(byte[] bytes, int offset, boolean littleEndian) {
+        return littleEndian ? (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8 : readShort(bytes, offset);
+    }
+
+    private static long readTiffInt(byte[] bytes, int offset, boolean littleEndian) {
+        long high = readTiffShort(bytes, offset + (littleEndian ? 2 : 0), littleEndian);
+        long low = readTiffShort(bytes, offset + (littleEndian ? 0 : 2), littleEndian);
+        return high << 16 | low;
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        // SOF0 to SOF15, except for DHT, JPG and DAC which share the range
+        return marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc;
+    }
+
+    private static ImageMetadata readGif(DataInputStream data) throws IOException {
+        // the logical screen size, little-endian
+        int width = data.readUnsignedByte() | data.readUnsignedByte() << 8;
+        int height = data.readUnsignedByte() | data.readUnsignedByte() << 8;
+        return valid("image/gif", width, height, DEFAULT_RESOLUTION, DEFAULT_RESOLUTION, NORMAL_ORIENTATION);
+    }
+
+    private static ImageMetadata valid(String mimeType, int width, int height, double horizontalResolution, double verticalResolution,
+                                       int orientation) {
+        if (width <= 0 || height <= 0 || horizontalResolution <= 0 || verticalResolution <= 0) {
+            return null;
+        }
+        return new ImageMetadata(mimeType, width, height, horizontalResolution, verticalResolution, orientation);
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 8 | (bytes[offset + 1] & 0xff);
+    }
+
+    /**
+     * @return the image info docx4j uses to scale the image, as if it had probed the image itself.
+     */
+    ImageInfo toImageInfo() {
+        ImageInfo imageInfo = new ImageInfo(null, mimeType);
+        ImageSize size = new ImageSize(width, height, horizontalResolution, verticalResolution);
+        size.calcSizeFromPixels();
+        imageInfo.setSize(size);
+        return imageInfo;
+    }
+
+    String getMimeType() {
+        return mimeType;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    double getHorizontalResolution() {
+        return horizontalResolution;
+    }
+
+    double getVerticalResolution() {
+        return verticalResolution;
+    }
+
+    /**
+     * @return the EXIF orientation of a JPEG image from 1 to 8, {@link #NORMAL_ORIENTATION} for other images.
+     */
+    int getOrientation() {
+        return orientation;
+    }
+}
@@ -12,27 +12,58 @@ import java.util.Random;
 /**
  * This ITypeResolver allows context objects to return objects of type Image. An expression that resolves to an Image
  * object will be replaced by an actual image in the resulting .docx document. The image will be put as an inline into
- * the surrounding paragraph of text.
+ * the surrounding paragraph of text. Images with the same content are only embedded once into a document. Images may be
+ * downscaled to the size they are rendered at (see {@link ImageScaling}).
  */
 public class ImageResolver implements ITypeResolver {
 
     private static final Random random = new Random();
 
+    private final ImageScaling imageScaling;
+
+    public ImageResolver() {
+        this(null);
+    }
+
+    /**
+     * @param imageScaling the scaling applied to the images before they are embedded, null to embed them as they are.
+     */
+    public ImageResolver(ImageScaling imageScaling) {
+        this.imageScaling = imageScaling;
+    }
+
     @Override
     public R resolve(WordprocessingMLPackage document, Object image) {
         try {
-            // TODO: adding the same image twice will put the image twice into the docx-zip file. make the second
-            //       addition of the same image a reference instead.
             Image img = (Image) image;
-            return createRunWithImage(document, img.getImageBytes(), img.getFilename(), img.getAltText(), img.getMaxWidth());
+            // images that are not held in memory are streamed into the document when it is saved
+            BinaryPartAbstractImage imagePart = DocumentImageParts.getOrCreate(document, img, imageScaling);
+            return createRunWithImage(imagePart, img.getFilename(), img.getAltText(), img.getMaxWidth());
         } catch (Exception e) {
             throw new DocxStamperException("Error while adding image to document!", e);
         }
     }
 
+    /**
+     * Returns the image part showing the given image within the given document, adding it to the document only if the
+     * document does not contain an image with the same content yet.
+     *
+     * @param document the document to add the image to.
+     * @param bytes    the content of the image.
+     * @return the image part, referenced by the relationship with the id imagePart.getRelLast().getId().
+     * @throws Exception in case the image part could not be created.
+     */
+    public static BinaryPartAbstractImage getOrCreateImagePart(WordprocessingMLPackage document, byte[] bytes) throws Exception {
+        return DocumentImageParts.getOrCreate(document, bytes);
+    }
+
     public static R createRunWithImage(WordprocessingMLPackage wordMLPackage, byte[] bytes, String filenameHint, String altText, Integer maxWidth) throws Exception {
-        BinaryPartAbstractImage imagePart = BinaryPartAbstractImage.createImagePart(wordMLPackage, bytes);
+        // an image that has already been added to the document is embedded only once and referenced by each inline
+        BinaryPartAbstractImage imagePart = DocumentImageParts.getOrCreate(wordMLPackage, bytes);
+        return createRunWithImage(imagePart, filenameHint, altText, maxWidth);
+    }
 
+    private static R createRunWithImage(BinaryPartAbstractImage imagePart, String filenameHint, String altText, Integer maxWidth) throws Exception {
         // creating random ids assuming they are unique
         // id must not be too large, otherwise Word cannot open the document
         int id1 = random.nextInt(100000);
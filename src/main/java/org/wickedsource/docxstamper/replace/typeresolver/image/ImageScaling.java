@@ -0,0 +1,305 @@
+package org.wickedsource.docxstamper.replace.typeresolver.image;
+
+import org.docx4j.model.structure.PageDimensions;
+import org.docx4j.model.structure.SectionWrapper;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wickedsource.docxstamper.io.PartSource;
+import org.wickedsource.docxstamper.util.BoundedCache;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * <p>
+ * Downscales images that have a higher resolution than needed for the size they are rendered at, e.g. photos shown
+ * as thumbnails via Image.maxWidth. Images are resampled to the given resolution at their rendered size and encoded
+ * again, JPEG images with the given quality and all other images as PNG. The rendered size of the images stays the
+ * same. Images that cannot be decoded by javax.imageio, animated GIFs, JPEG images rotated or mirrored by their EXIF
+ * orientation and images that would not get smaller are embedded as they are.
+ * </p>
+ * <p>
+ * Downscaled images are cached by the hash of the original image and the target size, so that an image stamped into
+ * many documents is only processed once. An ImageScaling is thread-safe and may be shared by several DocxStampers.
+ * </p>
+ */
+public class ImageScaling {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageScaling.class);
+
+    public static final int DEFAULT_RESOLUTION = 150;
+
+    public static final float DEFAULT_QUALITY = 0.85f;
+
+    public static final int DEFAULT_CACHE_SIZE = 100;
+
+    private static final double EMU_PER_INCH = 914400;
+
+    private final int resolution;
+
+    private final float quality;
+
+    private final BoundedCache<Key, Optional<ScaledImage>> cache;
+
+    /**
+     * Downscales images to 150 dpi and encodes JPEG images with a quality of 0.85.
+     */
+    public ImageScaling() {
+        this(DEFAULT_RESOLUTION, DEFAULT_QUALITY);
+    }
+
+    /**
+     * @param resolution the resolution in dpi the images are downscaled to at their rendered size.
+     * @param quality    the quality from 0 to 1 downscaled JPEG images are encoded with.
+     */
+    public ImageScaling(int resolution, float quality) {
+        this(resolution, quality, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param resolution the resolution in dpi the images are downscaled to at their rendered size.
+     * @param quality    the quality from 0 to 1 downscaled JPEG images are encoded with.
+     * @param cacheSize  the maximum number of downscaled images kept in the cache. 0 disables caching.
+     */
+    public ImageScaling(int resolution, float quality, int cacheSize) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("resolution must be positive!");
+        }
+        if (quality < 0 || quality > 1) {
+            throw new IllegalArgumentException("quality must be between 0 and 1!");
+        }
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize must not be negative!");
+        }
+        this.resolution = resolution;
+        this.quality = quality;
+        this.cache = new BoundedCache<>(cacheSize, true);
+    }
+
+    public int getResolution() {
+        return resolution;
+    }
+
+    public float getQuality() {
+        return quality;
+    }
+
+    public int getCacheSize() {
+        return cache.getMaximumSize();
+    }
+
+    /**
+     * Downscales the given image to the size it is rendered at within the given document.
+     *
+     * @param document the document the image is inserted into.
+     * @param hash     the hash of the content of the image.
+     * @param metadata the metadata of the image.
+     * @param content  supplies the content of the image, only called if the image has to be downscaled.
+     * @param maxWidth the max width of the image in twip, or null.
+     * @return the downscaled image, null if the image is to be embedded as it is.
+     * @throws IOException in case the content of the image could not be read.
+     */
+    ScaledImage scale(WordprocessingMLPackage document, ByteBuffer hash, ImageMetadata metadata,
+                      PartSource.IOSupplier<byte[]> content, Integer maxWidth) throws IOException {
+        if (metadata.getOrientation() != ImageMetadata.NORMAL_ORIENTATION) {
+            // javax.imageio ignores the EXIF orientation and the re-encoded image would not carry it over
+            return null;
+        }
+        int width = (int) Math.ceil(getRenderedWidth(document, metadata, maxWidth) / EMU_PER_INCH * resolution);
+        if (width >= metadata.getWidth()) {
+            return null;
+        }
+        int height = Math.max(1, (int) Math.round((double) metadata.getHeight() * width / metadata.getWidth()));
+        Key key = new Key(hash, width, height);
+        Optional<ScaledImage> scaled = cache.get(key);
+        if (scaled == null) {
+            scaled = Optional.ofNullable(resample(content.get(), metadata, width, height));
+            cache.put(key, scaled);
+        }
+        return scaled.orElse(null);
+    }
+
+    /**
+     * @return the number of downscaled images currently held in the cache.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the rendered width in EMU, calculated the same way docx4j calculates the extent of an image inline.
+     */
+    private static long getRenderedWidth(WordprocessingMLPackage document, ImageMetadata metadata, Integer maxWidth) {
+        List<SectionWrapper> sections = document.getDocumentModel().getSections();
+        PageDimensions page = sections.get(sections.size() - 1).getPageDimensions();
+        return BinaryPartAbstractImage.CxCy.scale(metadata.toImageInfo(), page, maxWidth == null ? -1 : maxWidth).getCx();
+    }
+
+    private ScaledImage resample(byte[] bytes, ImageMetadata metadata, int width, int height) {
+        try {
+            BufferedImage source = read(bytes, metadata);
+            if (source == null) {
+                return null;
+            }
+            boolean jpeg = "image/jpeg".equals(metadata.getMimeType());
+            boolean alpha = !jpeg && source.getColorModel().hasAlpha();
+            BufferedImage target = resize(source, width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            byte[] scaled = jpeg ? writeJpeg(target) : writePng(target);
+            if (scaled.length >= bytes.length) {
+                return null;
+            }
+            return new ScaledImage(scaled, jpeg ? "image/jpeg" : "image/png");
+        } catch (IOException | RuntimeException e) {
+            logger.warn(String.format("Image could not be downscaled, embedding it as it is. Reason: %s", e.getMessage()));
+            logger.trace("Reason for not downscaling the image:", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the first frame of the image, null if the image cannot be decoded or is an animated GIF, which would
+     * lose all its other frames.
+     */
+    private static BufferedImage read(byte[] bytes, ImageMetadata metadata) throws IOException {
+        // memory cache streams, since ImageIO may otherwise cache the streams in temporary files
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                if ("image/gif".equals(metadata.getMimeType()) && reader.getNumImages(true) > 1) {
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Halves the size of the image until it is less than twice the target size, since a single bilinear step would
+     * skip most of the pixels of a large image.
+     */
+    private static BufferedImage resize(BufferedImage image, int width, int height, int type) {
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private byte[] writeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = new MemoryCacheImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] writePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = new MemoryCacheImageOutputStream(out)) {
+            ImageIO.write(image, "png", imageOut);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The content and format of a downscaled image.
+     */
+    static class ScaledImage {
+
+        private final byte[] bytes;
+
+        private final String mimeType;
+
+        ScaledImage(byte[] bytes, String mimeType) {
+            this.bytes = bytes;
+            this.mimeType = mimeType;
+        }
+
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        String getMimeType() {
+            return mimeType;
+        }
+    }
+
+    private static class Key {
+
+        private final ByteBuffer hash;
+
+        private final int width;
+
+        private final int height;
+
+        Key(ByteBuffer hash, int width, int height) {
+            this.hash = hash;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return width == key.width && height == key.height && hash.equals(key.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hash, width, height);
+        }
+    }
+}
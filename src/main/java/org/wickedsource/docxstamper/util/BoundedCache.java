@@ -0,0 +1,152 @@
+package org.wickedsource.docxstamper.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * A small thread-safe cache holding about a given number of entries, evicting the least recently used or the first
+ * added entries when it is full. Values are computed by the callers outside the cache, so that a slow computation does
+ * not block other lookups. Concurrent misses on the same key simply compute the value twice.
+ * </p>
+ * <p>
+ * Lookups do not take a lock: the entries are kept in a ConcurrentHashMap and each entry records when it was added or
+ * last used. Eviction is approximate. Once the cache grows beyond its maximum size, a single thread removes the oldest
+ * tenth of the entries at once, while other threads adding entries in the meantime go on without waiting for it. The
+ * cache may thus briefly hold a few more entries than its maximum size.
+ * </p>
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ */
+public class BoundedCache<K, V> {
+
+    private final int maximumSize;
+
+    private final boolean accessOrder;
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * @param maximumSize the maximum number of entries kept in the cache. 0 disables caching.
+     * @param accessOrder true to evict the least recently used entries, false to evict the first added entries.
+     */
+    public BoundedCache(int maximumSize, boolean accessOrder) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("maximumSize must not be negative!");
+        }
+        this.maximumSize = maximumSize;
+        this.accessOrder = accessOrder;
+    }
+
+    /**
+     * @param key the key to look up.
+     * @return the cached value, null if the key is not in the cache.
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (accessOrder) {
+            entry.stamp = System.nanoTime();
+        }
+        return entry.value;
+    }
+
+    /**
+     * Caches the given value, evicting entries if the cache is full.
+     *
+     * @param key   the key of the value.
+     * @param value the value to cache.
+     */
+    public void put(K key, V value) {
+        if (maximumSize > 0) {
+            entries.put(key, new Entry<>(value));
+            if (entries.size() > maximumSize) {
+                evict();
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries currently held in the cache.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private void evict() {
+        // a thread that finds another one evicting leaves it to that thread, which checks the size again afterwards
+        while (entries.size() > maximumSize && evicting.compareAndSet(false, true)) {
+            try {
+                evictOldest(entries.size() - maximumSize);
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    private void evictOldest(int excess) {
+        if (excess <= 0) {
+            return;
+        }
+        // the stamps are copied, since they may change while sorting
+        List<Candidate<K, V>> candidates = new ArrayList<>(entries.size());
+        for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+            candidates.add(new Candidate<>(entry.getKey(), entry.getValue()));
+        }
+        candidates.sort(Comparator.comparingLong(candidate -> candidate.stamp));
+        // a tenth of the entries is evicted at once, so that a full cache is not sorted on every miss
+        int count = Math.min(Math.max(excess, maximumSize / 10), candidates.size());
+        for (int i = 0; i < count; i++) {
+            entries.remove(candidates.get(i).key, candidates.get(i).entry);
+        }
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+
+        /**
+         * The time the entry has been added or, in access order, last been used.
+         */
+        private volatile long stamp = System.nanoTime();
+
+        private Entry(V value) {
+            this.value = value;
+        }
+    }
+
+    private static class Candidate<K, V> {
+
+        private final K key;
+
+        private final Entry<V> entry;
+
+        private final long stamp;
+
+        private Candidate(K key, Entry<V> entry) {
+            this.key = key;
+            this.entry = entry;
+            this.stamp = entry.stamp;
+        }
+    }
+}
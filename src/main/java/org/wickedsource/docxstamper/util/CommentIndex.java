@@ -0,0 +1,236 @@
+package org.wickedsource.docxstamper.util;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.CommentRangeEnd;
+import org.docx4j.wml.CommentRangeStart;
+import org.docx4j.wml.Comments;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.wickedsource.docxstamper.api.DocxStamperException;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Index of the comments of a document, built in a single pass over comments.xml and the paragraphs of the document.
+ * Answers the same questions as {@link CommentUtil#getCommentFor(org.docx4j.wml.ContentAccessor, WordprocessingMLPackage)}
+ * and {@link CommentUtil#getCommentAround(R, WordprocessingMLPackage)} in constant time.
+ * </p>
+ * <p>
+ * The index reflects the state of the document at the time it was built, i.e. paragraphs and runs added afterwards
+ * are not commented as far as the index is concerned.
+ * </p>
+ * <p>
+ * The {@link Positions} of the commented paragraphs and runs can be recorded once for a template and attached to each
+ * copy of it, so that the copies are indexed without looking at the content of their paragraphs again.
+ * </p>
+ */
+public class CommentIndex {
+
+    private static final String POSITIONS_KEY = Positions.class.getName();
+
+    private final Map<BigInteger, Comments.Comment> commentsById = new HashMap<>();
+
+    private final Map<P, Comments.Comment> paragraphComments = new IdentityHashMap<>();
+
+    private final Map<R, Comments.Comment> runComments = new IdentityHashMap<>();
+
+    /**
+     * Indexes the comments of all paragraphs within the given document, including headers and footers.
+     *
+     * @param document the document whose comments to index.
+     */
+    public CommentIndex(WordprocessingMLPackage document) {
+        this(document, DocumentUtil.extractElements(document, P.class));
+    }
+
+    /**
+     * Indexes the comments of the given paragraphs.
+     *
+     * @param document   the document containing the comments.xml part.
+     * @param paragraphs the paragraphs whose comments to index.
+     */
+    public CommentIndex(WordprocessingMLPackage document, List<P> paragraphs) {
+        indexComments(document);
+        for (P paragraph : paragraphs) {
+            indexParagraph(paragraph);
+        }
+    }
+
+    /**
+     * Indexes the comments of all given paragraphs of the document. If positions have been attached to the document
+     * with {@link #attachPositions(WordprocessingMLPackage, Positions)}, they are used (and detached) instead of looking
+     * at the content of the paragraphs.
+     *
+     * @param document   the document containing the comments.xml part.
+     * @param paragraphs all paragraphs of the document, as returned by DocumentUtil.extractElements(document, P.class).
+     * @return the index of the comments of the paragraphs.
+     */
+    public static CommentIndex forDocument(WordprocessingMLPackage document, List<P> paragraphs) {
+        Positions positions = (Positions) document.getUserData(POSITIONS_KEY);
+        if (positions != null) {
+            // the positions only hold as long as the document has not been changed
+            document.setUserData(POSITIONS_KEY, null);
+            CommentIndex index = positions.apply(document, paragraphs);
+            if (index != null) {
+                return index;
+            }
+        }
+        return new CommentIndex(document, paragraphs);
+    }
+
+    /**
+     * Attaches the positions of the comments of a template to an unchanged copy of it, to be used by the next call of
+     * {@link #forDocument(WordprocessingMLPackage, List)}.
+     *
+     * @param document  the copy of the template.
+     * @param positions the positions recorded for the template.
+     */
+    public static void attachPositions(WordprocessingMLPackage document, Positions positions) {
+        document.setUserData(POSITIONS_KEY, positions);
+    }
+
+    /**
+     * Records the positions of the commented paragraphs and runs within the given paragraphs.
+     *
+     * @param paragraphs the paragraphs this index has been built from, in the same order.
+     * @return the positions, to index a copy of the document with the same paragraphs.
+     */
+    public Positions getPositions(List<P> paragraphs) {
+        Positions positions = new Positions(paragraphs.size());
+        for (int i = 0; i < paragraphs.size(); i++) {
+            P paragraph = paragraphs.get(i);
+            Comments.Comment paragraphComment = paragraphComments.get(paragraph);
+            if (paragraphComment == null) {
+                // a paragraph without comment start has no commented runs either
+                continue;
+            }
+            positions.add(i, -1, paragraphComment.getId());
+            List<Object> content = paragraph.getContent();
+            for (int j = 0; j < content.size(); j++) {
+                Comments.Comment runComment = runComments.get(content.get(j));
+                if (runComment != null) {
+                    positions.add(i, j, runComment.getId());
+                }
+            }
+        }
+        return positions;
+    }
+
+    private void indexComments(WordprocessingMLPackage document) {
+        try {
+            Comments comments = CommentUtil.getCommentsContents(document);
+            if (comments != null) {
+                for (Comments.Comment comment : comments.getComment()) {
+                    commentsById.putIfAbsent(comment.getId(), comment);
+                }
+            }
+        } catch (Docx4JException e) {
+            throw new DocxStamperException("error accessing the comments of the document!", e);
+        }
+    }
+
+    private void indexParagraph(P paragraph) {
+        List<Object> content = paragraph.getContent();
+        for (int i = 0; i < content.size(); i++) {
+            Object element = content.get(i);
+            if (!(element instanceof CommentRangeStart)) {
+                continue;
+            }
+            Comments.Comment comment = commentsById.get(((CommentRangeStart) element).getId());
+            if (comment == null) {
+                continue;
+            }
+            // a paragraph is commented with the first comment that starts within it
+            paragraphComments.putIfAbsent(paragraph, comment);
+            // a run is commented if it is the only element between the start and the end of a comment
+            if (i + 2 < content.size()) {
+                Object run = content.get(i + 1);
+                if (run instanceof R && XmlUtils.unwrap(content.get(i + 2)) instanceof CommentRangeEnd) {
+                    runComments.put((R) run, comment);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param id the id of the comment.
+     * @return the comment with the given id from comments.xml, null if there is none.
+     */
+    public Comments.Comment getComment(BigInteger id) {
+        return commentsById.get(id);
+    }
+
+    /**
+     * @param paragraph the paragraph whose comment to retrieve.
+     * @return the first comment starting within the given paragraph, null if the paragraph is not commented.
+     */
+    public Comments.Comment getCommentFor(P paragraph) {
+        return paragraphComments.get(paragraph);
+    }
+
+    /**
+     * @param run the run whose comment to retrieve.
+     * @return the comment whose range consists of exactly the given run, null if there is none.
+     */
+    public Comments.Comment getCommentAround(R run) {
+        return runComments.get(run);
+    }
+
+    /**
+     * The positions of the commented paragraphs and runs of a document, i.e. the index of each paragraph within all
+     * paragraphs of the document and the index of each run within the content of its paragraph. Immutable once
+     * recorded, so it can be shared by all copies of a template.
+     */
+    public static final class Positions {
+
+        private final int paragraphCount;
+
+        private final List<int[]> positions = new ArrayList<>();
+
+        private final List<BigInteger> commentIds = new ArrayList<>();
+
+        private Positions(int paragraphCount) {
+            this.paragraphCount = paragraphCount;
+        }
+
+        private void add(int paragraph, int run, BigInteger commentId) {
+            positions.add(new int[]{paragraph, run});
+            commentIds.add(commentId);
+        }
+
+        /**
+         * @return the index of the given document, null if its paragraphs do not match the recorded positions.
+         */
+        private CommentIndex apply(WordprocessingMLPackage document, List<P> paragraphs) {
+            if (paragraphs.size() != paragraphCount) {
+                return null;
+            }
+            CommentIndex index = new CommentIndex(document, Collections.<P>emptyList());
+            for (int i = 0; i < positions.size(); i++) {
+                P paragraph = paragraphs.get(positions.get(i)[0]);
+                int run = positions.get(i)[1];
+                Comments.Comment comment = index.commentsById.get(commentIds.get(i));
+                if (comment == null) {
+                    return null;
+                }
+                if (run < 0) {
+                    index.paragraphComments.put(paragraph, comment);
+                } else if (run < paragraph.getContent().size() && paragraph.getContent().get(run) instanceof R) {
+                    index.runComments.put((R) paragraph.getContent().get(run), comment);
+                } else {
+                    return null;
+                }
+            }
+            return index;
+        }
+    }
+}
@@ -196,9 +196,21 @@ public class CommentUtil {
 
     public static Map<BigInteger, CommentWrapper> getComments(
             WordprocessingMLPackage document) {
+        return getComments(document, document.getMainDocumentPart());
+    }
+
+    /**
+     * Returns the comments whose ranges lie within the given content, keyed by the id of the root comments.
+     *
+     * @param document the document containing the comments.xml part.
+     * @param content  the content in which to look for comment ranges.
+     * @return the root comments found within the content, each with its nested comments as children.
+     */
+    public static Map<BigInteger, CommentWrapper> getComments(
+            WordprocessingMLPackage document, ContentAccessor content) {
         Map<BigInteger, CommentWrapper> rootComments = new HashMap<>();
         Map<BigInteger, CommentWrapper> allComments = new HashMap<>();
-        collectCommentRanges(rootComments, allComments, document);
+        collectCommentRanges(rootComments, allComments, content);
         collectComments(rootComments, allComments, document);
         return cleanMalformedComments(rootComments);
     }
@@ -247,10 +259,9 @@ public class CommentUtil {
 
     private static void collectCommentRanges(
             Map<BigInteger, CommentWrapper> rootComments, final Map<BigInteger, CommentWrapper> allComments,
-            WordprocessingMLPackage document) {
+            ContentAccessor content) {
         Stack<CommentWrapper> stack = new Stack<>();
-        DocumentWalker documentWalker = new BaseDocumentWalker(
-                document.getMainDocumentPart()) {
+        DocumentWalker documentWalker = new BaseDocumentWalker(content) {
             @Override
             protected void onCommentRangeStart(CommentRangeStart commentRangeStart) {
                 CommentWrapper commentWrapper = allComments.get(commentRangeStart.getId());
@@ -289,10 +300,9 @@ public class CommentUtil {
     private static void collectComments(final Map<BigInteger, CommentWrapper> rootComments,
                                         Map<BigInteger, CommentWrapper> allComments, WordprocessingMLPackage document) {
         try {
-            CommentsPart commentsPart = (CommentsPart) document.getParts()
-                    .get(new PartName("/word/comments.xml"));
-            if (commentsPart != null) {
-                for (Comments.Comment comment : commentsPart.getContents().getComment()) {
+            Comments comments = getCommentsContents(document);
+            if (comments != null) {
+                for (Comments.Comment comment : comments.getComment()) {
                     CommentWrapper commentWrapper = allComments.get(comment.getId());
                     if (commentWrapper != null) {
                         commentWrapper.setComment(comment);
@@ -304,4 +314,21 @@ public class CommentUtil {
         }
     }
 
+    /**
+     * Returns the contents of the comments.xml part of the given document. The parts of the document are accessed
+     * while holding the lock of the document, since other threads may add parts to it while stamping repeated parts
+     * concurrently.
+     *
+     * @param document the document whose comments to load.
+     * @return the comments of the document, null if it has no comments.xml part.
+     * @throws Docx4JException in case the comments could not be loaded.
+     */
+    public static Comments getCommentsContents(WordprocessingMLPackage document) throws Docx4JException {
+        synchronized (document) {
+            CommentsPart commentsPart = (CommentsPart) document.getParts()
+                    .get(new PartName("/word/comments.xml"));
+            return commentsPart != null ? commentsPart.getContents() : null;
+        }
+    }
+
 }
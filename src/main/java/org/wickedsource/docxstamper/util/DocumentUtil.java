@@ -12,7 +12,9 @@ import org.wickedsource.docxstamper.api.DocxStamperException;
 import org.wickedsource.docxstamper.replace.typeresolver.image.ImageResolver;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import static java.util.function.Function.identity;
@@ -26,6 +28,10 @@ public class DocumentUtil {
     /**
      * Recursively walk through the content accessor to replace embedded images and import the matching
      * files to the destination document before importing content.
+     * <p>
+     * Each image part of the source document is imported into the destination document only once (and not at all if
+     * the destination already contains an image with the same content). The image runs keep their drawings, only the
+     * relationship ids are rewritten to point to the image parts of the destination document.
      *
      * @param sourceDocument document to import.
      * @param destDocument   document to add the source document content to.
@@ -38,8 +44,9 @@ public class DocumentUtil {
     ) throws Exception {
         return walkObjects(
                 sourceDocument.getMainDocumentPart(),
-                sourceDocument,
-                destDocument);
+                new DocxImageExtractor(sourceDocument),
+                destDocument,
+                new HashMap<>());
     }
 
     /**
@@ -47,27 +54,33 @@ public class DocumentUtil {
      * files to the destination document.
      *
      * @param sourceContainer source container to walk.
-     * @param sourceDocument  source document containing image files.
+     * @param imageExtractor  extractor of the images of the source document.
      * @param destDocument    destination document to add image files to.
+     * @param importedImages  source relationship id -> destination relationship id of the images imported so far.
      * @return the list of imported objects from the source container.
      * @throws Exception
      */
     private static List<Object> walkObjects(
             ContentAccessor sourceContainer,
-            WordprocessingMLPackage sourceDocument,
-            WordprocessingMLPackage destDocument
+            DocxImageExtractor imageExtractor,
+            WordprocessingMLPackage destDocument,
+            Map<String, String> importedImages
     ) throws Exception {
         List<Object> result = new ArrayList<>();
         for (Object obj : sourceContainer.getContent()) {
             if (obj instanceof R && isImageRun((R) obj)) {
-                DocxImageExtractor docxImageExtractor = new DocxImageExtractor(sourceDocument);
-                byte[] imageData = docxImageExtractor.getRunDrawingData((R) obj);
-                String filename = docxImageExtractor.getRunDrawingFilename((R) obj);
-                String alt = docxImageExtractor.getRunDrawingAltText((R) obj);
-                Integer maxWidth = docxImageExtractor.getRunDrawingMaxWidth((R) obj);
-                result.add(ImageResolver.createRunWithImage(destDocument, imageData, filename, alt, maxWidth));
+                R run = (R) obj;
+                String sourceRelId = imageExtractor.getRunDrawingRelId(run);
+                String destRelId = importedImages.get(sourceRelId);
+                if (destRelId == null) {
+                    byte[] imageData = imageExtractor.getImageData(sourceRelId);
+                    destRelId = ImageResolver.getOrCreateImagePart(destDocument, imageData).getRelLast().getId();
+                    importedImages.put(sourceRelId, destRelId);
+                }
+                imageExtractor.setRunDrawingRelId(run, destRelId);
+                result.add(run);
             } else if (obj instanceof ContentAccessor) {
-                List<Object> importedChildren = walkObjects((ContentAccessor) obj, sourceDocument, destDocument);
+                List<Object> importedChildren = walkObjects((ContentAccessor) obj, imageExtractor, destDocument, importedImages);
                 ((ContentAccessor) obj).getContent().clear();
                 ((ContentAccessor) obj).getContent().addAll(importedChildren);
                 result.add(obj);
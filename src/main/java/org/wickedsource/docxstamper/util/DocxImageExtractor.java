@@ -1,6 +1,7 @@
 package org.wickedsource.docxstamper.util;
 
 import jakarta.xml.bind.JAXBElement;
+import org.apache.commons.io.IOUtils;
 import org.docx4j.dml.Graphic;
 import org.docx4j.dml.picture.Pic;
 import org.docx4j.dml.wordprocessingDrawing.Inline;
@@ -12,7 +13,6 @@ import org.wickedsource.docxstamper.api.DocxStamperException;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
 
 public class DocxImageExtractor {
 
@@ -42,21 +42,20 @@ public class DocxImageExtractor {
     }
 
     /**
-     * Converts an InputStream to byte array.
+     * Reads an InputStream completely and closes it.
      *
-     * @param size expected size of the byte array.
+     * @param size expected size of the byte array, -1 if unknown.
      * @param is   input stream to read data from.
      * @return the data from the input stream.
-     *
      */
     private static byte[] streamToByteArray(long size, InputStream is) throws IOException {
         if (size > Integer.MAX_VALUE) {
             throw new DocxStamperException("Image size exceeds maximum allowed (2GB)");
         }
-        int intSize = (int) size;
-        byte[] data = new byte[intSize];
-        int numRead = is.read(data);
-        return Arrays.copyOfRange(data, 0, numRead);
+        try (InputStream in = is) {
+            // a single read() may return only part of the data, e.g. for an entry inflated from a zip archive
+            return size >= 0 ? IOUtils.toByteArray(in, size) : IOUtils.toByteArray(in);
+        }
     }
 
     private static Pic getPic(R run) {
@@ -95,21 +94,38 @@ public class DocxImageExtractor {
     }
 
     /**
-     * Extract an image bytes from an embedded image run.
+     * Extract the image bytes of the image part with the given relationship id.
      *
-     * @param run run containing the embedded drawing.
-     * @return
+     * @param imageRelId the id of the relationship from the main document part to the image part.
+     * @return the content of the image part.
      * @throws Docx4JException
      * @throws IOException
      */
-    byte[] getRunDrawingData(R run) throws Docx4JException, IOException {
-        String imageRelId = getPic(run).getBlipFill().getBlip().getEmbed();
+    byte[] getImageData(String imageRelId) throws Docx4JException, IOException {
         String imageRelPartName = getImageRelPartName(imageRelId);
         long size = getImageSize(imageRelPartName);
         InputStream stream = getImageStream(imageRelPartName);
         return streamToByteArray(size, stream);
     }
 
+    /**
+     * @param run run containing the embedded drawing.
+     * @return the id of the relationship to the image part shown by the drawing.
+     */
+    public String getRunDrawingRelId(R run) {
+        return getPic(run).getBlipFill().getBlip().getEmbed();
+    }
+
+    /**
+     * Points the drawing of an embedded image run to another image part.
+     *
+     * @param run        run containing the embedded drawing.
+     * @param imageRelId the id of the relationship to the image part to show.
+     */
+    public void setRunDrawingRelId(R run, String imageRelId) {
+        getPic(run).getBlipFill().getBlip().setEmbed(imageRelId);
+    }
+
     public String getRunDrawingFilename(R run) {
         return getPic(run).getNvPicPr().getCNvPr().getName();
     }
@@ -4,6 +4,8 @@ import org.docx4j.wml.P;
 import org.docx4j.wml.R;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -61,48 +63,87 @@ public class ParagraphWrapper {
      * @param replacement the object to replace the placeholder String.
      */
     public void replace(String placeholder, Object replacement) {
-        String text = getText();
-        int matchStartIndex = text.indexOf(placeholder);
-        if (matchStartIndex == -1) {
+        int matchStartIndex = getText().indexOf(placeholder);
+        if (matchStartIndex == -1 || placeholder.isEmpty()) {
             // nothing to replace
             return;
         }
-        int matchEndIndex = matchStartIndex + placeholder.length() - 1;
-        List<IndexedRun> affectedRuns = getAffectedRuns(matchStartIndex, matchEndIndex);
+        replace(Collections.singletonList(new TextReplacement(matchStartIndex, placeholder.length(), replacement)));
+    }
+
+    /**
+     * Applies several replacements to the paragraph at once. The ranges of the replacements refer to the aggregated
+     * text before any of them is applied and must not overlap. The replacements are applied from right to left, so
+     * that applying one does not shift the ranges of the others, and the runs are recalculated once at the end.
+     *
+     * @param replacements the replacements to apply, in any order.
+     */
+    public void replace(List<TextReplacement> replacements) {
+        if (replacements.isEmpty()) {
+            return;
+        }
+        List<TextReplacement> sortedReplacements = new ArrayList<>(replacements);
+        sortedReplacements.sort(Comparator.comparingInt(TextReplacement::getStartIndex).reversed());
+        int textLength = currentPosition;
+        for (TextReplacement replacement : sortedReplacements) {
+            if (replacement.getEndIndex() >= textLength) {
+                throw new IllegalArgumentException(String.format(
+                        "Replacement of range %d-%d overlaps another one or exceeds the text of the paragraph!",
+                        replacement.getStartIndex(), replacement.getEndIndex()));
+            }
+            replace(replacement.getStartIndex(), replacement.getEndIndex(), replacement.getReplacement());
+            textLength = replacement.getStartIndex();
+        }
+        recalculateRuns();
+    }
+
+    /**
+     * Replaces the given range of the aggregated text. Afterwards, the list of runs only contains the (possibly
+     * shortened) runs in front of the replaced range, which is all that is needed for replacing ranges further left.
+     * Since the affected runs are searched from the end of the list, a batch of replacements passes each run only once.
+     */
+    private void replace(int matchStartIndex, int matchEndIndex, Object replacement) {
+        int lastAffectedRun = runs.size() - 1;
+        while (runs.get(lastAffectedRun).getStartIndex() > matchEndIndex) {
+            lastAffectedRun--;
+        }
+        int firstAffectedRun = lastAffectedRun;
+        while (runs.get(firstAffectedRun).getStartIndex() > matchStartIndex) {
+            firstAffectedRun--;
+        }
+        List<IndexedRun> affectedRuns = new ArrayList<>(runs.subList(firstAffectedRun, lastAffectedRun + 1));
+        runs.subList(firstAffectedRun, runs.size()).clear();
+        List<Object> content = this.paragraph.getContent();
 
         boolean singleRun = affectedRuns.size() == 1;
 
         if (singleRun) {
             IndexedRun run = affectedRuns.get(0);
 
-            boolean placeholderSpansCompleteRun = placeholder.length() == RunUtil.getText(run.getRun()).length();
+            boolean placeholderSpansCompleteRun = matchStartIndex == run.getStartIndex() && matchEndIndex == run.getEndIndex();
             boolean placeholderAtStartOfRun = matchStartIndex == run.getStartIndex();
             boolean placeholderAtEndOfRun = matchEndIndex == run.getEndIndex();
-            boolean placeholderWithinRun = matchStartIndex > run.getStartIndex() && matchEndIndex < run.getEndIndex();
 
             if (placeholderSpansCompleteRun) {
-                this.paragraph.getContent().remove(run.getRun());
-                this.paragraph.getContent().add(run.getIndexInParent(), replacement);
-                recalculateRuns();
+                content.set(run.getIndexInParent(), replacement);
             } else if (placeholderAtStartOfRun) {
                 run.replace(matchStartIndex, matchEndIndex, "");
-                this.paragraph.getContent().add(run.getIndexInParent(), replacement);
-                recalculateRuns();
+                content.add(run.getIndexInParent(), replacement);
             } else if (placeholderAtEndOfRun) {
                 run.replace(matchStartIndex, matchEndIndex, "");
-                this.paragraph.getContent().add(run.getIndexInParent() + 1, replacement);
-                recalculateRuns();
-            } else if (placeholderWithinRun) {
+                content.add(run.getIndexInParent() + 1, replacement);
+                runs.add(new IndexedRun(run.getStartIndex(), matchStartIndex - 1, run.getIndexInParent(), run.getRun()));
+            } else {
                 String runText = RunUtil.getText(run.getRun());
-                int startIndex = runText.indexOf(placeholder);
-                int endIndex = startIndex + placeholder.length();
+                int startIndex = matchStartIndex - run.getStartIndex();
+                int endIndex = matchEndIndex - run.getStartIndex() + 1;
                 R run1 = RunUtil.create(runText.substring(0, startIndex), this.paragraph);
                 R run2 = RunUtil.create(runText.substring(endIndex), this.paragraph);
-                this.paragraph.getContent().add(run.getIndexInParent(), run2);
-                this.paragraph.getContent().add(run.getIndexInParent(), replacement);
-                this.paragraph.getContent().add(run.getIndexInParent(), run1);
-                this.paragraph.getContent().remove(run.getRun());
-                recalculateRuns();
+                content.add(run.getIndexInParent(), run2);
+                content.add(run.getIndexInParent(), replacement);
+                content.add(run.getIndexInParent(), run1);
+                content.remove(run.getIndexInParent() + 3);
+                runs.add(new IndexedRun(run.getStartIndex(), matchStartIndex - 1, run.getIndexInParent(), run1));
             }
 
         } else {
@@ -113,28 +154,18 @@ public class ParagraphWrapper {
             firstRun.replace(matchStartIndex, matchEndIndex, "");
             lastRun.replace(matchStartIndex, matchEndIndex, "");
 
-            // remove all runs between first and last
-            for (IndexedRun run : affectedRuns) {
-                if (run != firstRun && run != lastRun) {
-                    this.paragraph.getContent().remove(run.getRun());
-                }
+            // remove all runs between first and last, from right to left so that their indexes stay valid
+            for (int i = affectedRuns.size() - 2; i > 0; i--) {
+                content.remove(affectedRuns.get(i).getIndexInParent());
             }
 
             // add replacement run between first and last run
-            this.paragraph.getContent().add(firstRun.getIndexInParent() + 1, replacement);
+            content.add(firstRun.getIndexInParent() + 1, replacement);
 
-            recalculateRuns();
-        }
-    }
-
-    private List<IndexedRun> getAffectedRuns(int startIndex, int endIndex) {
-        List<IndexedRun> affectedRuns = new ArrayList<>();
-        for (IndexedRun run : runs) {
-            if (run.isTouchedByRange(startIndex, endIndex)) {
-                affectedRuns.add(run);
+            if (matchStartIndex > firstRun.getStartIndex()) {
+                runs.add(new IndexedRun(firstRun.getStartIndex(), matchStartIndex - 1, firstRun.getIndexInParent(), firstRun.getRun()));
             }
         }
-        return affectedRuns;
     }
 
     /**
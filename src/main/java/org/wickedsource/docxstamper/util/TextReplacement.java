@@ -0,0 +1,47 @@
+package org.wickedsource.docxstamper.util;
+
+/**
+ * Replacement of a range of the aggregated text of a {@link ParagraphWrapper} by a DOCX4J object, to be applied with
+ * {@link ParagraphWrapper#replace(java.util.List)}.
+ */
+public class TextReplacement {
+
+    private final int startIndex;
+
+    private final int length;
+
+    private final Object replacement;
+
+    /**
+     * @param startIndex  the index of the first character to replace within the aggregated text of the paragraph.
+     * @param length      the number of characters to replace, at least 1.
+     * @param replacement the DOCX4J object replacing the characters.
+     */
+    public TextReplacement(int startIndex, int length, Object replacement) {
+        if (startIndex < 0 || length < 1) {
+            throw new IllegalArgumentException(String.format("Invalid range to replace: start %d, length %d!", startIndex, length));
+        }
+        this.startIndex = startIndex;
+        this.length = length;
+        this.replacement = replacement;
+    }
+
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    /**
+     * @return the index of the last character to replace.
+     */
+    public int getEndIndex() {
+        return startIndex + length - 1;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public Object getReplacement() {
+        return replacement;
+    }
+}
@@ -1,15 +1,26 @@
 package org.wickedsource.docxstamper.util.walk;
 
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.ContentAccessor;
 import org.docx4j.wml.P;
 import org.docx4j.wml.R;
 
+import java.util.List;
+
 public abstract class BaseCoordinatesWalker extends CoordinatesWalker {
 
     public BaseCoordinatesWalker(WordprocessingMLPackage document) {
         super(document);
     }
 
+    public BaseCoordinatesWalker(ContentAccessor content) {
+        super(content);
+    }
+
+    public BaseCoordinatesWalker(List<P> paragraphs) {
+        super(paragraphs);
+    }
+
     @Override
     protected void onParagraph(P paragraph) {
 
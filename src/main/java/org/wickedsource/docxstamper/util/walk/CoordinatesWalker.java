@@ -2,25 +2,44 @@ package org.wickedsource.docxstamper.util.walk;
 
 import org.docx4j.XmlUtils;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.ContentAccessor;
 import org.docx4j.wml.P;
 import org.docx4j.wml.R;
 import org.wickedsource.docxstamper.util.DocumentUtil;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 public abstract class CoordinatesWalker {
 
-    private final WordprocessingMLPackage document;
+    private final Supplier<List<P>> paragraphs;
 
     public CoordinatesWalker(WordprocessingMLPackage document) {
-        this.document = document;
+        this.paragraphs = () -> DocumentUtil.extractElements(document, P.class);
+    }
+
+    /**
+     * Walks only the paragraphs within the given content, e.g. a part of a document that is stamped separately.
+     *
+     * @param content the content to walk.
+     */
+    public CoordinatesWalker(ContentAccessor content) {
+        this.paragraphs = () -> DocumentUtil.extractElements(content, P.class);
+    }
+
+    /**
+     * Walks the given paragraphs, for callers that already extracted them from the document.
+     *
+     * @param paragraphs the paragraphs to walk.
+     */
+    public CoordinatesWalker(List<P> paragraphs) {
+        this.paragraphs = () -> paragraphs;
     }
 
     public void walk() {
 
-        List<P> paragraphs = DocumentUtil.extractElements(document, P.class);
-        for (P paragraph: paragraphs) {
+        for (P paragraph: paragraphs.get()) {
             walkParagraph(paragraph);
         }
     }
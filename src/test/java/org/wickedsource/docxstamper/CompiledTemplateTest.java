@@ -0,0 +1,132 @@
+package org.wickedsource.docxstamper;
+
+import org.docx4j.TextUtils;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.P;
+import org.docx4j.wml.Tbl;
+import org.docx4j.wml.Tr;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wickedsource.docxstamper.api.DocxStamperException;
+import org.wickedsource.docxstamper.context.Character;
+import org.wickedsource.docxstamper.context.CharactersContext;
+import org.wickedsource.docxstamper.util.CommentIndex;
+import org.wickedsource.docxstamper.util.DocumentUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+public class CompiledTemplateTest extends AbstractDocx4jTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void compiledTemplateCanBeStampedSeveralTimes() throws Docx4JException, IOException {
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("RepeatTableRowTest.docx"));
+        DocxStamper<CharactersContext> stamper = new DocxStamper<>(new DocxStamperConfiguration());
+
+        CharactersContext simpsons = new CharactersContext();
+        simpsons.getCharacters().add(new Character("Homer Simpson", "Dan Castellaneta"));
+        simpsons.getCharacters().add(new Character("Marge Simpson", "Julie Kavner"));
+
+        CharactersContext springfield = new CharactersContext();
+        springfield.getCharacters().add(new Character("Kent Brockman", "Harry Shearer"));
+
+        List<Tr> simpsonsRows = stampRows(stamper, template, simpsons);
+        List<Tr> springfieldRows = stampRows(stamper, template, springfield);
+        List<Tr> simpsonsRowsAgain = stampRows(stamper, template, simpsons);
+
+        Assert.assertEquals(3, simpsonsRows.size());
+        Assert.assertTrue(TextUtils.getText(simpsonsRows.get(1)).contains("Homer Simpson"));
+        Assert.assertTrue(TextUtils.getText(simpsonsRows.get(2)).contains("Marge Simpson"));
+
+        Assert.assertEquals(2, springfieldRows.size());
+        Assert.assertTrue(TextUtils.getText(springfieldRows.get(1)).contains("Kent Brockman"));
+
+        Assert.assertEquals(3, simpsonsRowsAgain.size());
+        Assert.assertTrue(TextUtils.getText(simpsonsRowsAgain.get(1)).contains("Homer Simpson"));
+    }
+
+    @Test
+    public void mappedTemplateCanBeStampedSeveralTimes() throws Docx4JException, IOException {
+        Path file = folder.newFile("RepeatTableRowTest.docx").toPath();
+        try (InputStream in = getClass().getResourceAsStream("RepeatTableRowTest.docx")) {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        CompiledTemplate template = DocxStamper.compile(file);
+
+        CharactersContext simpsons = new CharactersContext();
+        simpsons.getCharacters().add(new Character("Homer Simpson", "Dan Castellaneta"));
+        simpsons.getCharacters().add(new Character("Marge Simpson", "Julie Kavner"));
+
+        List<Tr> rows = stampRows(new DocxStamper<>(new DocxStamperConfiguration()), template, simpsons);
+        List<Tr> copiedRows = stampRows(new DocxStamper<>(new DocxStamperConfiguration().setCopyUntouchedParts(true)), template, simpsons);
+
+        Assert.assertEquals(3, rows.size());
+        Assert.assertTrue(TextUtils.getText(rows.get(1)).contains("Homer Simpson"));
+        Assert.assertEquals(3, copiedRows.size());
+        Assert.assertTrue(TextUtils.getText(copiedRows.get(2)).contains("Marge Simpson"));
+    }
+
+    @Test
+    public void copiesOfTemplateDoNotShareContent() throws Docx4JException {
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("RepeatTableRowTest.docx"));
+        WordprocessingMLPackage first = template.newDocument(false);
+        WordprocessingMLPackage second = template.newDocument(false);
+        int paragraphs = DocumentUtil.extractElements(second, P.class).size();
+
+        Assert.assertNotSame(first.getMainDocumentPart().getContents(), second.getMainDocumentPart().getContents());
+        first.getMainDocumentPart().getContent().clear();
+        Assert.assertEquals(paragraphs, DocumentUtil.extractElements(second, P.class).size());
+        Assert.assertEquals(paragraphs, DocumentUtil.extractElements(template.newDocument(false), P.class).size());
+    }
+
+    @Test
+    public void indexesCommentsOfCopiesLikeAFreshIndex() throws Docx4JException {
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("RepeatTableRowTest.docx"));
+        WordprocessingMLPackage document = template.newDocument(false);
+        List<P> paragraphs = DocumentUtil.extractElements(document, P.class);
+
+        CommentIndex recorded = CommentIndex.forDocument(document, paragraphs);
+        CommentIndex fresh = new CommentIndex(document, paragraphs);
+
+        int commented = 0;
+        for (P paragraph : paragraphs) {
+            Assert.assertSame(fresh.getCommentFor(paragraph), recorded.getCommentFor(paragraph));
+            if (recorded.getCommentFor(paragraph) != null) {
+                commented++;
+            }
+        }
+        Assert.assertTrue(commented > 0);
+    }
+
+    @Test(expected = DocxStamperException.class)
+    public void compilingAnInvalidTemplateFileFails() throws IOException {
+        Path file = folder.newFile("invalid.docx").toPath();
+        Files.write(file, new byte[]{1, 2, 3});
+        DocxStamper.compile(file);
+    }
+
+    @Test(expected = DocxStamperException.class)
+    public void compilingAnInvalidTemplateFails() {
+        DocxStamper.compile(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+    }
+
+    private List<Tr> stampRows(DocxStamper<CharactersContext> stamper, CompiledTemplate template, CharactersContext context) throws IOException, Docx4JException {
+        OutputStream out = getOutputStream();
+        stamper.stamp(template, context, out);
+        WordprocessingMLPackage document = WordprocessingMLPackage.load(getInputStream(out));
+        List<Tbl> tables = DocumentUtil.extractElements(document, Tbl.class);
+        return DocumentUtil.extractElements(tables.get(0), Tr.class);
+    }
+}
@@ -0,0 +1,87 @@
+package org.wickedsource.docxstamper;
+
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wickedsource.docxstamper.context.ImageContext;
+import org.wickedsource.docxstamper.io.CompressionStrategy;
+import org.wickedsource.docxstamper.io.ZipCompression;
+import org.wickedsource.docxstamper.replace.typeresolver.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class CompressionStrategyTest extends AbstractDocx4jTest {
+
+    @Test
+    public void storesCompressedMediaAndDeflatesXml() throws Exception {
+        DocxStamperConfiguration config = new DocxStamperConfiguration()
+                .setCompressionStrategy(CompressionStrategy.storeCompressedMedia(Deflater.BEST_SPEED));
+        byte[] document = stampImage(config);
+
+        Map<String, Integer> methods = readEntryMethods(document);
+        Assert.assertEquals(Integer.valueOf(ZipEntry.DEFLATED), methods.get("[Content_Types].xml"));
+        Assert.assertEquals(Integer.valueOf(ZipEntry.DEFLATED), methods.get("word/document.xml"));
+        Assert.assertTrue(methods.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith("word/media/"))
+                .allMatch(entry -> entry.getValue() == ZipEntry.STORED));
+        Assert.assertTrue(methods.keySet().stream().anyMatch(name -> name.startsWith("word/media/")));
+
+        WordprocessingMLPackage.load(new ByteArrayInputStream(document));
+    }
+
+    @Test
+    public void storesAllPartsUncompressed() throws Exception {
+        DocxStamperConfiguration config = new DocxStamperConfiguration()
+                .setCompressionStrategy(CompressionStrategy.always(ZipCompression.STORED));
+        byte[] document = stampImage(config);
+
+        Assert.assertTrue(readEntryMethods(document).values().stream().allMatch(method -> method == ZipEntry.STORED));
+        WordprocessingMLPackage loaded = WordprocessingMLPackage.load(new ByteArrayInputStream(document));
+        Assert.assertNotNull(loaded.getMainDocumentPart().getContents());
+    }
+
+    @Test
+    public void copiesUntouchedPartsFromTemplate() throws Exception {
+        DocxStamperConfiguration config = new DocxStamperConfiguration()
+                .setCompressionStrategy(CompressionStrategy.always(ZipCompression.STORED))
+                .setCopyUntouchedParts(true);
+        byte[] document = stampImage(config);
+
+        Map<String, Integer> methods = readEntryMethods(document);
+        // the stamped main document is written anew, the untouched font table is copied deflated from the template
+        Assert.assertEquals(Integer.valueOf(ZipEntry.STORED), methods.get("word/document.xml"));
+        Assert.assertEquals(Integer.valueOf(ZipEntry.DEFLATED), methods.get("word/fontTable.xml"));
+
+        WordprocessingMLPackage loaded = WordprocessingMLPackage.load(new ByteArrayInputStream(document));
+        Assert.assertNotNull(loaded.getMainDocumentPart().getFontTablePart().getContents());
+    }
+
+    private byte[] stampImage(DocxStamperConfiguration config) throws IOException {
+        ImageContext context = new ImageContext();
+        context.setMonalisa(new Image(getClass().getResourceAsStream("monalisa.jpg")));
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("ImageReplacementInGlobalParagraphsTest.docx"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DocxStamper<ImageContext>(config).stamp(template, context, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private Map<String, Integer> readEntryMethods(byte[] document) throws IOException {
+        Map<String, Integer> methods = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(document))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                methods.put(entry.getName(), entry.getMethod());
+            }
+        }
+        return methods;
+    }
+}
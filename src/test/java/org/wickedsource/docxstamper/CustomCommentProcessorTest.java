@@ -9,10 +9,19 @@ import org.junit.Test;
 import org.wickedsource.docxstamper.api.commentprocessor.ICommentProcessor;
 import org.wickedsource.docxstamper.util.CommentWrapper;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class CustomCommentProcessorTest extends AbstractDocx4jTest {
 
@@ -26,6 +35,94 @@ public class CustomCommentProcessorTest extends AbstractDocx4jTest {
         Assert.assertEquals(2, processor.getVisitedParagraphs().size());
     }
 
+    @Test
+    public void processorsCreatedBySupplierAreNotShared() throws Exception {
+        Queue<CustomCommentProcessor> processors = new ConcurrentLinkedQueue<>();
+        DocxStamper<EmptyContext> stamper = new DocxStamperConfiguration()
+                .addCommentProcessor(ICustomCommentProcessor.class, () -> {
+                    CustomCommentProcessor processor = new CustomCommentProcessor();
+                    processors.add(processor);
+                    return processor;
+                })
+                .build();
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("CustomCommentProcessorTest.docx"));
+
+        stampConcurrently(stamper, template, 16);
+
+        Assert.assertEquals(16, processors.size());
+        for (CustomCommentProcessor processor : processors) {
+            Assert.assertEquals(2, processor.getVisitedParagraphs().size());
+        }
+    }
+
+    @Test
+    public void processorInstanceIsUsedByOneStampAtATime() throws Exception {
+        CustomCommentProcessor processor = new CustomCommentProcessor();
+        DocxStamper<EmptyContext> stamper = new DocxStamperConfiguration()
+                .addCommentProcessor(ICustomCommentProcessor.class, processor)
+                .build();
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("CustomCommentProcessorTest.docx"));
+
+        stampConcurrently(stamper, template, 16);
+
+        Assert.assertEquals(32, processor.getVisitedParagraphs().size());
+    }
+
+    @Test(timeout = 60000)
+    public void differentProcessorInstancesDoNotWaitForEachOther() throws Exception {
+        CountDownLatch blockingStampStarted = new CountDownLatch(1);
+        CountDownLatch otherStampDone = new CountDownLatch(1);
+        AtomicBoolean waitedInVain = new AtomicBoolean();
+        DocxStamper<EmptyContext> blockingStamper = new DocxStamperConfiguration()
+                .addCommentProcessor(ICustomCommentProcessor.class, new CustomCommentProcessor() {
+                    @Override
+                    public void visitParagraph() {
+                        blockingStampStarted.countDown();
+                        try {
+                            if (!otherStampDone.await(10, TimeUnit.SECONDS)) {
+                                waitedInVain.set(true);
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        super.visitParagraph();
+                    }
+                })
+                .build();
+        DocxStamper<EmptyContext> otherStamper = new DocxStamperConfiguration()
+                .addCommentProcessor(ICustomCommentProcessor.class, new CustomCommentProcessor())
+                .build();
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("CustomCommentProcessorTest.docx"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> blocked = executor.submit(() -> blockingStamper.stamp(template, new EmptyContext(), new ByteArrayOutputStream()));
+            blockingStampStarted.await();
+            otherStamper.stamp(template, new EmptyContext(), new ByteArrayOutputStream());
+            otherStampDone.countDown();
+            blocked.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertFalse(waitedInVain.get());
+    }
+
+    private void stampConcurrently(DocxStamper<EmptyContext> stamper, CompiledTemplate template, int documents) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < documents; i++) {
+                results.add(executor.submit(() -> stamper.stamp(template, new EmptyContext(), new ByteArrayOutputStream())));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     static class EmptyContext{
 
     }
@@ -2,12 +2,15 @@ package org.wickedsource.docxstamper;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 
 import org.docx4j.openpackaging.exceptions.Docx4JException;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.docx4j.wml.P;
 import org.junit.Assert;
 import org.junit.Test;
+import org.springframework.expression.spel.support.ReflectiveMethodResolver;
 import org.wickedsource.docxstamper.context.NameContext;
 import org.wickedsource.docxstamper.util.ParagraphWrapper;
 
@@ -26,6 +29,46 @@ public class CustomExpressionFunctionTest extends AbstractDocx4jTest {
     Assert.assertEquals("To test that custom functions work together with comment expressions, we toggle visibility of this paragraph with a comment expression.", new ParagraphWrapper(commentedParagraph).getText());
   }
 
+  @Test
+  public void worksWithFinalContextRootAndLambdaImplementation() throws Docx4JException, IOException {
+    FinalNameContext context = new FinalNameContext("Homer Simpson");
+    InputStream template = getClass().getResourceAsStream("CustomExpressionFunction.docx");
+    DocxStamperConfiguration config = new DocxStamperConfiguration()
+            .exposeInterfaceToExpressionLanguage(UppercaseFunction.class, String::toUpperCase);
+    WordprocessingMLPackage document = stampAndLoad(template, context, config);
+    P nameParagraph = (P) document.getMainDocumentPart().getContent().get(2);
+    Assert.assertEquals("In this paragraph, a custom expression function is used to uppercase a String: HOMER SIMPSON.", new ParagraphWrapper(nameParagraph).getText());
+    Assert.assertEquals(4, document.getMainDocumentPart().getContent().size());
+  }
+
+  @Test
+  public void functionsAreAvailableWhenConfigurerReplacesMethodResolvers() throws Docx4JException, IOException {
+    NameContext context = new NameContext("Homer Simpson");
+    InputStream template = getClass().getResourceAsStream("CustomExpressionFunction.docx");
+    DocxStamperConfiguration config = new DocxStamperConfiguration()
+            .setEvaluationContextConfigurer(evaluationContext -> evaluationContext.setMethodResolvers(
+                    new ArrayList<>(Collections.singletonList(new ReflectiveMethodResolver()))))
+            .exposeInterfaceToExpressionLanguage(UppercaseFunction.class, new UppercaseFunctionImpl());
+    WordprocessingMLPackage document = stampAndLoad(template, context, config);
+    P nameParagraph = (P) document.getMainDocumentPart().getContent().get(2);
+    Assert.assertEquals("In this paragraph, a custom expression function is used to uppercase a String: HOMER SIMPSON.", new ParagraphWrapper(nameParagraph).getText());
+    // the comment processor toggling the last paragraph is available as well
+    Assert.assertEquals(4, document.getMainDocumentPart().getContent().size());
+  }
+
+  public static final class FinalNameContext {
+
+    private final String name;
+
+    public FinalNameContext(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+  }
+
   public interface UppercaseFunction {
 
     String toUppercase(String string);
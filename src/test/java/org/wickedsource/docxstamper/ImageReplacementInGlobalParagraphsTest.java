@@ -1,6 +1,7 @@
 package org.wickedsource.docxstamper;
 
 import jakarta.xml.bind.JAXBElement;
+import org.docx4j.dml.wordprocessingDrawing.Inline;
 import org.docx4j.openpackaging.exceptions.Docx4JException;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.docx4j.wml.Drawing;
@@ -43,4 +44,25 @@ public class ImageReplacementInGlobalParagraphsTest extends AbstractDocx4jTest {
         Assert.assertTrue(((JAXBElement<?>) ((R) ((P) document.getMainDocumentPart().getContent().get(3)).getContent().get(1)).getContent().get(0)).getValue() instanceof Drawing);
     }
 
+    @Test
+    public void sameImageIsEmbeddedOnce() throws Docx4JException, IOException {
+        Image monalisa = new Image(getClass().getResourceAsStream("monalisa.jpg"));
+        ImageContext context = new ImageContext();
+        context.setMonalisa(monalisa);
+
+        InputStream template = getClass().getResourceAsStream("ImageReplacementInGlobalParagraphsTest.docx");
+        WordprocessingMLPackage document = stampAndLoad(template, context);
+
+        Assert.assertEquals(getImageRelationshipId(document, 2), getImageRelationshipId(document, 3));
+        Assert.assertEquals(1, document.getParts().getParts().keySet().stream()
+                .filter(partName -> partName.getName().startsWith("/word/media/"))
+                .count());
+    }
+
+    private String getImageRelationshipId(WordprocessingMLPackage document, int paragraphIndex) {
+        R run = (R) ((P) document.getMainDocumentPart().getContent().get(paragraphIndex)).getContent().get(1);
+        Drawing drawing = (Drawing) ((JAXBElement<?>) run.getContent().get(0)).getValue();
+        Inline inline = (Inline) drawing.getAnchorOrInline().get(0);
+        return inline.getGraphic().getGraphicData().getPic().getBlipFill().getBlip().getEmbed();
+    }
 }
@@ -0,0 +1,172 @@
+package org.wickedsource.docxstamper;
+
+import jakarta.xml.bind.JAXBElement;
+import org.apache.commons.io.IOUtils;
+import org.docx4j.dml.wordprocessingDrawing.Inline;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.wml.Drawing;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wickedsource.docxstamper.context.ImageContext;
+import org.wickedsource.docxstamper.replace.typeresolver.image.Image;
+import org.wickedsource.docxstamper.replace.typeresolver.image.ImageScaling;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ImageScalingTest extends AbstractDocx4jTest {
+
+    @Test
+    public void downscalesImageToRenderedSizeKeepingItsExtent() throws Docx4JException, IOException {
+        byte[] butterfly = IOUtils.toByteArray(getClass().getResourceAsStream("butterfly.png"));
+        WordprocessingMLPackage original = stamp(new Image(butterfly, 1000), new DocxStamperConfiguration());
+        WordprocessingMLPackage scaled = stamp(new Image(butterfly, 1000),
+                new DocxStamperConfiguration().setImageScaling(new ImageScaling(150, 0.85f)));
+
+        Assert.assertEquals(getInline(original).getExtent().getCx(), getInline(scaled).getExtent().getCx());
+        Assert.assertEquals(getInline(original).getExtent().getCy(), getInline(scaled).getExtent().getCy());
+        List<BinaryPart> media = getMedia(scaled);
+        Assert.assertEquals(1, media.size());
+        byte[] scaledBytes = media.get(0).getBytes();
+        Assert.assertTrue(scaledBytes.length < butterfly.length);
+        // 1000 twip at 150 dpi
+        Assert.assertEquals(105, ImageIO.read(new ByteArrayInputStream(scaledBytes)).getWidth());
+    }
+
+    @Test
+    public void recompressesJpegImages() throws Docx4JException, IOException {
+        byte[] monalisa = IOUtils.toByteArray(getClass().getResourceAsStream("monalisa.jpg"));
+        WordprocessingMLPackage document = stamp(new Image(monalisa, 500),
+                new DocxStamperConfiguration().setImageScaling(new ImageScaling(150, 0.5f)));
+
+        List<BinaryPart> media = getMedia(document);
+        Assert.assertEquals(1, media.size());
+        Assert.assertEquals("image/jpeg", media.get(0).getContentType());
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(media.get(0).getBytes()));
+        Assert.assertEquals(53, image.getWidth());
+    }
+
+    @Test
+    public void leavesImagesWithoutExcessResolutionAsTheyAre() throws Docx4JException, IOException {
+        byte[] monalisa = IOUtils.toByteArray(getClass().getResourceAsStream("monalisa.jpg"));
+        WordprocessingMLPackage document = stamp(new Image(monalisa),
+                new DocxStamperConfiguration().setImageScaling(new ImageScaling()));
+
+        List<BinaryPart> media = getMedia(document);
+        Assert.assertEquals(1, media.size());
+        Assert.assertArrayEquals(monalisa, media.get(0).getBytes());
+    }
+
+    @Test
+    public void scalesImageOnlyOnceForSeveralDocuments() throws Docx4JException, IOException {
+        byte[] butterfly = IOUtils.toByteArray(getClass().getResourceAsStream("butterfly.png"));
+        ImageScaling scaling = new ImageScaling();
+        DocxStamperConfiguration config = new DocxStamperConfiguration().setImageScaling(scaling);
+
+        byte[] first = getMedia(stamp(new Image(butterfly, 1000), config)).get(0).getBytes();
+        byte[] second = getMedia(stamp(new Image(butterfly, 1000), config)).get(0).getBytes();
+
+        Assert.assertArrayEquals(first, second);
+        Assert.assertEquals(1, scaling.size());
+    }
+
+    @Test
+    public void leavesAnimatedGifsAsTheyAre() throws Docx4JException, IOException {
+        byte[] gif = createAnimatedGif(2400, 1200);
+        WordprocessingMLPackage document = stamp(new Image(gif, 1000),
+                new DocxStamperConfiguration().setImageScaling(new ImageScaling()));
+
+        List<BinaryPart> media = getMedia(document);
+        Assert.assertEquals(1, media.size());
+        Assert.assertArrayEquals(gif, media.get(0).getBytes());
+    }
+
+    @Test
+    public void leavesRotatedJpegImagesAsTheyAre() throws Docx4JException, IOException {
+        byte[] monalisa = withExifOrientation(IOUtils.toByteArray(getClass().getResourceAsStream("monalisa.jpg")), 6);
+        WordprocessingMLPackage document = stamp(new Image(monalisa, 500),
+                new DocxStamperConfiguration().setImageScaling(new ImageScaling(150, 0.5f)));
+
+        List<BinaryPart> media = getMedia(document);
+        Assert.assertEquals(1, media.size());
+        Assert.assertArrayEquals(monalisa, media.get(0).getBytes());
+    }
+
+    /**
+     * Inserts an EXIF segment with the given orientation right after the start of image marker.
+     */
+    private byte[] withExifOrientation(byte[] jpeg, int orientation) throws IOException {
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(segment);
+        data.writeBytes("Exif\0\0");
+        // big-endian TIFF header, followed by the first IFD with a single entry
+        data.writeBytes("MM");
+        data.writeShort(42);
+        data.writeInt(8);
+        data.writeShort(1);
+        data.writeShort(0x0112);
+        data.writeShort(3);
+        data.writeInt(1);
+        data.writeShort(orientation);
+        data.writeShort(0);
+        data.writeInt(0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        out.write(0xff);
+        out.write(0xe1);
+        out.write((segment.size() + 2) >> 8);
+        out.write((segment.size() + 2) & 0xff);
+        segment.writeTo(out);
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+
+    private byte[] createAnimatedGif(int width, int height) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            writer.prepareWriteSequence(null);
+            for (int frame = 0; frame < 2; frame++) {
+                writer.writeToSequence(new IIOImage(new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED), null, null), null);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private WordprocessingMLPackage stamp(Image image, DocxStamperConfiguration config) throws Docx4JException, IOException {
+        ImageContext context = new ImageContext();
+        context.setMonalisa(image);
+        return stampAndLoad(getClass().getResourceAsStream("ImageReplacementInGlobalParagraphsTest.docx"), context, config);
+    }
+
+    private Inline getInline(WordprocessingMLPackage document) {
+        R run = (R) ((P) document.getMainDocumentPart().getContent().get(2)).getContent().get(1);
+        Drawing drawing = (Drawing) ((JAXBElement<?>) run.getContent().get(0)).getValue();
+        return (Inline) drawing.getAnchorOrInline().get(0);
+    }
+
+    private List<BinaryPart> getMedia(WordprocessingMLPackage document) {
+        return document.getParts().getParts().values().stream()
+                .filter(part -> part.getPartName().getName().startsWith("/word/media/"))
+                .map(part -> (BinaryPart) part)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,96 @@
+package org.wickedsource.docxstamper;
+
+import org.apache.commons.io.IOUtils;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wickedsource.docxstamper.context.ImageContext;
+import org.wickedsource.docxstamper.io.CompressionStrategy;
+import org.wickedsource.docxstamper.io.ZipCompression;
+import org.wickedsource.docxstamper.replace.typeresolver.image.Image;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class LazyImageTest extends AbstractDocx4jTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsImageFromSupplierOnlyWhenInsertingAndSaving() throws IOException, Docx4JException {
+        byte[] monalisa = IOUtils.toByteArray(getClass().getResourceAsStream("monalisa.jpg"));
+        AtomicInteger opened = new AtomicInteger();
+        Image image = new Image(() -> {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(monalisa);
+        });
+        Assert.assertEquals(0, opened.get());
+
+        List<ZipEntry> media = new ArrayList<>();
+        List<byte[]> mediaContent = new ArrayList<>();
+        byte[] document = stamp(image, new DocxStamperConfiguration());
+        readMedia(document, media, mediaContent);
+
+        // the template shows the image twice, it is read once to insert it and once to save it
+        Assert.assertEquals(2, opened.get());
+        Assert.assertEquals(1, media.size());
+        Assert.assertEquals(ZipEntry.STORED, media.get(0).getMethod());
+        Assert.assertArrayEquals(monalisa, mediaContent.get(0));
+        WordprocessingMLPackage loaded = WordprocessingMLPackage.load(new ByteArrayInputStream(document));
+        Assert.assertEquals(monalisa.length, loaded.getSourcePartStore().getPartSize(media.get(0).getName()));
+    }
+
+    @Test
+    public void streamsImageFromFileIntoDeflatedEntry() throws IOException {
+        Path file = folder.newFile("butterfly.png").toPath();
+        try (InputStream in = getClass().getResourceAsStream("butterfly.png")) {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        DocxStamperConfiguration config = new DocxStamperConfiguration()
+                .setCompressionStrategy(CompressionStrategy.always(ZipCompression.deflated(Deflater.BEST_SPEED)));
+
+        List<ZipEntry> media = new ArrayList<>();
+        List<byte[]> mediaContent = new ArrayList<>();
+        readMedia(stamp(new Image(file), config), media, mediaContent);
+
+        Assert.assertEquals(1, media.size());
+        Assert.assertTrue(media.get(0).getName().endsWith(".png"));
+        Assert.assertEquals(ZipEntry.DEFLATED, media.get(0).getMethod());
+        Assert.assertArrayEquals(Files.readAllBytes(file), mediaContent.get(0));
+    }
+
+    private byte[] stamp(Image image, DocxStamperConfiguration config) {
+        ImageContext context = new ImageContext();
+        context.setMonalisa(image);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DocxStamper<ImageContext>(config).stamp(getClass().getResourceAsStream("ImageReplacementInGlobalParagraphsTest.docx"), context, out);
+        return out.toByteArray();
+    }
+
+    private void readMedia(byte[] document, List<ZipEntry> media, List<byte[]> mediaContent) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(document))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.getName().startsWith("word/media/")) {
+                    media.add(entry);
+                    mediaContent.add(IOUtils.toByteArray(zip));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.wickedsource.docxstamper;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.model.datastorage.CustomXmlDataStorageImpl;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.CustomXmlDataStoragePart;
+import org.docx4j.openpackaging.parts.Part;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wickedsource.docxstamper.context.Character;
+import org.wickedsource.docxstamper.context.CharactersContext;
+import org.wickedsource.docxstamper.io.LazyCustomXmlDataStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+public class LazyLoadTest extends AbstractDocx4jTest {
+
+    private static final String CUSTOM_XML = "<customer xmlns=\"urn:test\"><name>Homer Simpson</name></customer>";
+
+    @Test
+    public void loadsOnlyPartsAccessedByStamping() throws Exception {
+        WordprocessingMLPackage document = DocxStamper.loadLazily(createTemplateWithCustomXml());
+        CustomXmlDataStoragePart customXmlPart = getCustomXmlPart(document);
+        Assert.assertTrue(customXmlPart.getData() instanceof LazyCustomXmlDataStorage);
+        Assert.assertFalse(((LazyCustomXmlDataStorage) customXmlPart.getData()).isLoaded());
+
+        CharactersContext context = new CharactersContext();
+        context.getCharacters().add(new Character("Homer Simpson", "Dan Castellaneta"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DocxStamper<CharactersContext>().stamp(document, context, out);
+
+        Assert.assertFalse(((LazyCustomXmlDataStorage) customXmlPart.getData()).isLoaded());
+        Assert.assertFalse(document.getMainDocumentPart().getStyleDefinitionsPart().isUnmarshalled());
+
+        // the untouched custom XML part is written unchanged and can still be parsed on demand
+        WordprocessingMLPackage stamped = DocxStamper.loadLazily(new ByteArrayInputStream(out.toByteArray()));
+        CustomXmlDataStoragePart stampedPart = getCustomXmlPart(stamped);
+        Assert.assertEquals("Homer Simpson", stampedPart.getData().getDocument().getDocumentElement().getTextContent());
+        Assert.assertTrue(((LazyCustomXmlDataStorage) stampedPart.getData()).isLoaded());
+    }
+
+    @Test
+    public void loadsCompiledTemplatesLazilyOnlyIfAskedTo() throws Exception {
+        CompiledTemplate template = DocxStamper.compile(createTemplateWithCustomXml());
+
+        Assert.assertFalse(getCustomXmlPart(template.newDocument(false)).getData() instanceof LazyCustomXmlDataStorage);
+        Assert.assertTrue(getCustomXmlPart(template.newDocument(true)).getData() instanceof LazyCustomXmlDataStorage);
+    }
+
+    @Test
+    public void stampsTemplatesLazilyIfConfigured() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DocxStamperConfiguration()
+                .setLazyLoading(true)
+                .<CharactersContext>build()
+                .stamp(DocxStamper.compile(createTemplateWithCustomXml()), new CharactersContext(), out);
+
+        WordprocessingMLPackage stamped = WordprocessingMLPackage.load(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals("Homer Simpson", getCustomXmlPart(stamped).getData().getDocument().getDocumentElement().getTextContent());
+    }
+
+    private ByteArrayInputStream createTemplateWithCustomXml() throws Exception {
+        WordprocessingMLPackage template = WordprocessingMLPackage.load(getClass().getResourceAsStream("RepeatTableRowTest.docx"));
+        CustomXmlDataStorageImpl data = new CustomXmlDataStorageImpl();
+        data.setDocument(XmlUtils.getNewDocumentBuilder().parse(new ByteArrayInputStream(CUSTOM_XML.getBytes("UTF-8"))));
+        CustomXmlDataStoragePart customXmlPart = new CustomXmlDataStoragePart();
+        customXmlPart.setData(data);
+        template.getMainDocumentPart().addTargetPart(customXmlPart);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.save(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    private CustomXmlDataStoragePart getCustomXmlPart(WordprocessingMLPackage document) {
+        for (Part part : document.getParts().getParts().values()) {
+            if (part instanceof CustomXmlDataStoragePart) {
+                return (CustomXmlDataStoragePart) part;
+            }
+        }
+        throw new AssertionError("no custom XML part found");
+    }
+}
@@ -12,10 +12,16 @@ import org.wickedsource.docxstamper.util.ParagraphWrapper;
 import org.wickedsource.docxstamper.util.walk.BaseDocumentWalker;
 import org.wickedsource.docxstamper.util.walk.DocumentWalker;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RepeatDocPartTest extends AbstractDocx4jTest {
 
@@ -76,5 +82,148 @@ public class RepeatDocPartTest extends AbstractDocx4jTest {
 
     }
 
+    @Test
+    public void stamperCanBeReusedAfterRepeatingDocParts() throws Docx4JException {
+        DocxStamper<CharactersContext> stamper = new DocxStamper<>();
+        for (String name : new String[]{"Homer Simpson", "Marge Simpson"}) {
+            CharactersContext context = new CharactersContext();
+            context.getCharacters().add(new Character(name, "Actor"));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            stamper.stamp(getClass().getResourceAsStream("RepeatDocPartTest.docx"), context, out);
+            WordprocessingMLPackage document = WordprocessingMLPackage.load(new ByteArrayInputStream(out.toByteArray()));
+
+            P paragraph = (P) XmlUtils.unwrap(document.getMainDocumentPart().getContent().get(2));
+            Assert.assertEquals("Paragraph for test: " + name + " - Actor", new ParagraphWrapper(paragraph).getText());
+        }
+    }
+
+    @Test
+    public void stampsRepeatedPartsConcurrentlyInOrder() throws Docx4JException, IOException {
+        CharactersContext context = new CharactersContext();
+        for (int i = 0; i < 50; i++) {
+            context.getCharacters().add(new Character("Character " + i, "Actor " + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            DocxStamperConfiguration config = new DocxStamperConfiguration().setRepeatDocPartExecutor(executor);
+            InputStream template = getClass().getResourceAsStream("RepeatDocPartTest.docx");
+            WordprocessingMLPackage document = stampAndLoad(template, context, config);
+
+            List<Object> documentContent = document.getMainDocumentPart().getContent();
+            for (int i = 0; i < context.getCharacters().size(); i++) {
+                P paragraph = (P) XmlUtils.unwrap(documentContent.get(2 + 3 * i));
+                Assert.assertEquals(String.format("Paragraph for test: Character %d - Actor %d", i, i), new ParagraphWrapper(paragraph).getText());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void waitsForAllItemsBeforeThrowingTheFirstFailure() throws InterruptedException {
+        AtomicInteger resolvedNames = new AtomicInteger();
+        List<Object> characters = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            characters.add(new FailingCharacter(i % 4 == 0 ? new Bomb() : new DelayedName()));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            DocxStamperConfiguration config = new DocxStamperConfiguration()
+                    .setRepeatDocPartExecutor(executor)
+                    .addTypeResolver(Bomb.class, (document, bomb) -> {
+                        throw new IllegalStateException("boom");
+                    })
+                    .addTypeResolver(DelayedName.class, (document, name) -> {
+                        sleep(50);
+                        resolvedNames.incrementAndGet();
+                        return "delayed";
+                    });
+            try {
+                stampAndLoad(getClass().getResourceAsStream("RepeatDocPartTest.docx"), new FailingCharactersContext(characters), config);
+                Assert.fail("stamping should have failed");
+            } catch (Exception e) {
+                Throwable failure = e;
+                while (!(failure instanceof IllegalStateException)) {
+                    failure = failure.getCause();
+                }
+                Assert.assertEquals(1, failure.getSuppressed().length);
+            }
+            // each of the 6 other items resolves its name twice, all of them have finished before stamp() threw
+            int finished = resolvedNames.get();
+            Assert.assertEquals(12, finished);
+            Thread.sleep(200);
+            Assert.assertEquals(finished, resolvedNames.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void stampsItemsSequentiallyWithCommentProcessorInstance() throws Docx4JException, IOException {
+        CharactersContext context = new CharactersContext();
+        context.getCharacters().add(new Character("Homer Simpson", "Dan Castellaneta"));
+        context.getCharacters().add(new Character("Marge Simpson", "Julie Kavner"));
+        AtomicInteger executions = new AtomicInteger();
+        Executor executor = command -> {
+            executions.incrementAndGet();
+            command.run();
+        };
+
+        stampAndLoad(getClass().getResourceAsStream("RepeatDocPartTest.docx"), context, new DocxStamperConfiguration()
+                .setRepeatDocPartExecutor(executor)
+                .addCommentProcessor(CustomCommentProcessorTest.ICustomCommentProcessor.class, CustomCommentProcessorTest.CustomCommentProcessor::new));
+        Assert.assertEquals(2, executions.get());
+
+        executions.set(0);
+        stampAndLoad(getClass().getResourceAsStream("RepeatDocPartTest.docx"), context, new DocxStamperConfiguration()
+                .setRepeatDocPartExecutor(executor)
+                .addCommentProcessor(CustomCommentProcessorTest.ICustomCommentProcessor.class, new CustomCommentProcessorTest.CustomCommentProcessor()));
+        Assert.assertEquals(0, executions.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class Bomb {
+    }
+
+    public static class DelayedName {
+    }
+
+    public static class FailingCharacter {
+
+        private final Object name;
+
+        public FailingCharacter(Object name) {
+            this.name = name;
+        }
+
+        public Object getName() {
+            return name;
+        }
+
+        public String getActor() {
+            return "Actor";
+        }
+    }
+
+    public static class FailingCharactersContext {
+
+        private final List<Object> characters;
+
+        public FailingCharactersContext(List<Object> characters) {
+            this.characters = characters;
+        }
+
+        public List<Object> getCharacters() {
+            return characters;
+        }
+    }
 
 }
@@ -43,6 +43,10 @@ public class RepeatDocPartWithImageTest extends AbstractDocx4jTest {
 
         Assert.assertEquals(images.get(0).getImageBytes().length, document.getSourcePartStore().getPartSize("word/media/document_image_rId11.png"));
         Assert.assertEquals(images.get(1).getImageBytes().length, document.getSourcePartStore().getPartSize("word/media/document_image_rId12.jpeg"));
-        Assert.assertEquals(images.get(0).getImageBytes().length, document.getSourcePartStore().getPartSize("word/media/document_image_rId13.png"));
+        // the second occurrence of the first image references the part that has already been added
+        Assert.assertEquals(-1, document.getSourcePartStore().getPartSize("word/media/document_image_rId13.png"));
+        Assert.assertEquals(2, document.getParts().getParts().keySet().stream()
+                .filter(partName -> partName.getName().startsWith("/word/media/"))
+                .count());
     }
 }
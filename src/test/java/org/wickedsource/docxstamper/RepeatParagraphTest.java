@@ -15,6 +15,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class RepeatParagraphTest extends AbstractDocx4jTest {
 
@@ -63,5 +64,40 @@ public class RepeatParagraphTest extends AbstractDocx4jTest {
         Assert.assertEquals("Dan Castellaneta", new ParagraphWrapper(quotationCoords.get(5)).getText());
     }
 
+    @Test
+    public void repeatsParagraphsForStream() throws Docx4JException, IOException {
+        StreamContext context = new StreamContext(
+                new Character("Homer Simpson", "Dan Castellaneta"),
+                new Character("Marge Simpson", "Julie Kavner"));
+        InputStream template = getClass().getResourceAsStream("RepeatParagraphTest.docx");
+        WordprocessingMLPackage document = stampAndLoad(template, context);
+
+        final List<P> titleCoords = new ArrayList<>();
+        CoordinatesWalker walker = new BaseCoordinatesWalker(document) {
+            @Override
+            protected void onParagraph(P paragraph) {
+                if ("Titre2".equals(paragraph.getPPr().getPStyle().getVal())) {
+                    titleCoords.add(paragraph);
+                }
+            }
+        };
+        walker.walk();
 
+        Assert.assertEquals(2, titleCoords.size());
+        Assert.assertEquals("Homer Simpson", new ParagraphWrapper(titleCoords.get(0)).getText());
+        Assert.assertEquals("Marge Simpson", new ParagraphWrapper(titleCoords.get(1)).getText());
+    }
+
+    public static class StreamContext {
+
+        private final Stream<Character> characters;
+
+        StreamContext(Character... characters) {
+            this.characters = Stream.of(characters);
+        }
+
+        public Stream<Character> getCharacters() {
+            return characters;
+        }
+    }
 }
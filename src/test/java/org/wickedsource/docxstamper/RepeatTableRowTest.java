@@ -14,6 +14,8 @@ import org.wickedsource.docxstamper.util.DocumentUtil;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 public class RepeatTableRowTest extends AbstractDocx4jTest {
@@ -52,6 +54,61 @@ public class RepeatTableRowTest extends AbstractDocx4jTest {
         Assert.assertEquals("Dan Castellaneta", getTextFromCell(parentTableRows, 6, 1));
     }
 
+    @Test
+    public void repeatsTableRowsForIterator() throws Docx4JException, IOException {
+        IteratorContext context = new IteratorContext(
+                new Character("Homer Simpson", "Dan Castellaneta"),
+                new Character("Marge Simpson", "Julie Kavner"));
+        InputStream template = getClass().getResourceAsStream("RepeatTableRowTest.docx");
+
+        WordprocessingMLPackage document = stampAndLoad(template, context);
+
+        final List<Tbl> tablesFromObject = DocumentUtil.extractElements(document, Tbl.class);
+        final List<Tr> parentTableRows = DocumentUtil.extractElements(tablesFromObject.get(0), Tr.class);
+        Assert.assertEquals(3, parentTableRows.size());
+        Assert.assertEquals("Homer Simpson", getTextFromCell(parentTableRows, 1, 0));
+        Assert.assertEquals("Julie Kavner", getTextFromCell(parentTableRows, 2, 1));
+    }
+
+    @Test
+    public void repeatsTableRowsForArray() throws Docx4JException, IOException {
+        ArrayContext context = new ArrayContext(new Character("Homer Simpson", "Dan Castellaneta"));
+        InputStream template = getClass().getResourceAsStream("RepeatTableRowTest.docx");
+
+        WordprocessingMLPackage document = stampAndLoad(template, context);
+
+        final List<Tbl> tablesFromObject = DocumentUtil.extractElements(document, Tbl.class);
+        final List<Tr> parentTableRows = DocumentUtil.extractElements(tablesFromObject.get(0), Tr.class);
+        Assert.assertEquals(2, parentTableRows.size());
+        Assert.assertEquals("Homer Simpson", getTextFromCell(parentTableRows, 1, 0));
+    }
+
+    public static class ArrayContext {
+
+        private final Character[] characters;
+
+        ArrayContext(Character... characters) {
+            this.characters = characters;
+        }
+
+        public Character[] getCharacters() {
+            return characters;
+        }
+    }
+
+    public static class IteratorContext {
+
+        private final Iterator<Character> characters;
+
+        IteratorContext(Character... characters) {
+            this.characters = Arrays.asList(characters).iterator();
+        }
+
+        public Iterator<Character> getCharacters() {
+            return characters;
+        }
+    }
+
     private String getTextFromCell(List<Tr> tableRows, int rowNumber, int cellNumber) {
         return getTextFromCell(DocumentUtil.extractElements(tableRows.get(rowNumber).getContent(), Tc.class).get(cellNumber));
     }
@@ -0,0 +1,97 @@
+package org.wickedsource.docxstamper;
+
+import org.docx4j.TextUtils;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.Tbl;
+import org.docx4j.wml.Tr;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wickedsource.docxstamper.api.DocxStamperException;
+import org.wickedsource.docxstamper.context.Character;
+import org.wickedsource.docxstamper.context.CharactersContext;
+import org.wickedsource.docxstamper.util.DocumentUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SharedStamperTest extends AbstractDocx4jTest {
+
+    @Test
+    public void stamperCanBeSharedBetweenThreads() throws Exception {
+        DocxStamper<CharactersContext> stamper = new DocxStamper<>();
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("RepeatTableRowTest.docx"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Tr>>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                CharactersContext context = new CharactersContext();
+                for (int j = 0; j <= i % 4; j++) {
+                    context.getCharacters().add(new Character("Character " + i, "Actor " + j));
+                }
+                results.add(executor.submit(() -> stampRows(stamper, template, context)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                List<Tr> rows = results.get(i).get();
+                // 1 header row + 1 row per character
+                Assert.assertEquals(2 + i % 4, rows.size());
+                for (int j = 1; j < rows.size(); j++) {
+                    Assert.assertTrue(TextUtils.getText(rows.get(j)).contains("Character " + i));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void failedStampDoesNotAffectNextStamp() throws Docx4JException, IOException {
+        DocxStamper<Object> stamper = new DocxStamper<>();
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("RepeatTableRowTest.docx"));
+
+        try {
+            stampRows(stamper, template, new FailingCharactersContext());
+            Assert.fail("stamping should have failed");
+        } catch (DocxStamperException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        CharactersContext context = new CharactersContext();
+        context.getCharacters().add(new Character("Homer Simpson", "Dan Castellaneta"));
+        List<Tr> rows = stampRows(stamper, template, context);
+        Assert.assertEquals(2, rows.size());
+        Assert.assertTrue(TextUtils.getText(rows.get(1)).contains("Homer Simpson"));
+    }
+
+    public static class FailingCharactersContext {
+
+        public Iterator<Object> getCharacters() {
+            return new Iterator<Object>() {
+                @Override
+                public boolean hasNext() {
+                    return true;
+                }
+
+                @Override
+                public Object next() {
+                    throw new IllegalStateException("cursor closed");
+                }
+            };
+        }
+    }
+
+    private <T> List<Tr> stampRows(DocxStamper<T> stamper, CompiledTemplate template, T context) throws Docx4JException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stamper.stamp(template, context, out);
+        WordprocessingMLPackage document = WordprocessingMLPackage.load(getInputStream(out));
+        List<Tbl> tables = DocumentUtil.extractElements(document, Tbl.class);
+        return DocumentUtil.extractElements(tables.get(0), Tr.class);
+    }
+}
@@ -0,0 +1,59 @@
+package org.wickedsource.docxstamper;
+
+import org.docx4j.TextUtils;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.Tbl;
+import org.docx4j.wml.Tr;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.wickedsource.docxstamper.context.Character;
+import org.wickedsource.docxstamper.context.CharactersContext;
+import org.wickedsource.docxstamper.util.DocumentUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+public class SpelCompilerModeTest extends AbstractDocx4jTest {
+
+    @Test
+    public void stampsWithImmediateCompilation() throws Docx4JException, IOException {
+        assertRowsAreStamped(SpelCompilerMode.IMMEDIATE);
+    }
+
+    @Test
+    public void stampsWithMixedCompilation() throws Docx4JException, IOException {
+        assertRowsAreStamped(SpelCompilerMode.MIXED);
+    }
+
+    private void assertRowsAreStamped(SpelCompilerMode compilerMode) throws Docx4JException, IOException {
+        CharactersContext context = new CharactersContext();
+        context.getCharacters().add(new Character("Homer Simpson", "Dan Castellaneta"));
+        context.getCharacters().add(new Character("Marge Simpson", "Julie Kavner"));
+        context.getCharacters().add(new Character("Bart Simpson", "Nancy Cartwright"));
+        InputStream template = getClass().getResourceAsStream("RepeatTableRowTest.docx");
+
+        DocxStamper<CharactersContext> stamper = new DocxStamperConfiguration().setSpelCompilerMode(compilerMode).build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stamper.stamp(template, context, out);
+        WordprocessingMLPackage document = WordprocessingMLPackage.load(new ByteArrayInputStream(out.toByteArray()));
+
+        List<Tbl> tables = DocumentUtil.extractElements(document, Tbl.class);
+        List<Tr> rows = DocumentUtil.extractElements(tables.get(0), Tr.class);
+        Assert.assertEquals(4, rows.size());
+        Assert.assertTrue(TextUtils.getText(rows.get(1)).contains("Homer Simpson"));
+        Assert.assertTrue(TextUtils.getText(rows.get(2)).contains("Julie Kavner"));
+        Assert.assertTrue(TextUtils.getText(rows.get(3)).contains("Bart Simpson"));
+        // the cached expressions of the rows can be compiled into bytecode
+        for (String expression : new String[]{"name", "actor"}) {
+            SpelExpression cached = (SpelExpression) stamper.getExpressionCache().getIfPresent(expression);
+            Assert.assertNotNull(cached);
+            Assert.assertTrue(cached.compileExpression());
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package org.wickedsource.docxstamper;
+
+import org.docx4j.TextUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.R;
+import org.docx4j.wml.Tbl;
+import org.docx4j.wml.Tr;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wickedsource.docxstamper.api.DocxStamperException;
+import org.wickedsource.docxstamper.context.Character;
+import org.wickedsource.docxstamper.context.CharactersContext;
+import org.wickedsource.docxstamper.util.DocumentUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StampAllTest extends AbstractDocx4jTest {
+
+    @Test
+    public void stampsAllContextsAndReportsFailures() throws Exception {
+        DocxStamper<Object> stamper = new DocxStamper<>();
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("RepeatTableRowTest.docx"));
+
+        List<Object> contexts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            contexts.add(i % 7 == 3 ? new SharedStamperTest.FailingCharactersContext() : createContext(i));
+        }
+
+        Map<Object, ByteArrayOutputStream> outputs = new ConcurrentHashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<StampingFailure<Object>> failures = stamper.stampAll(template, contexts, context -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                ByteArrayOutputStream out = new ByteArrayOutputStream() {
+                    @Override
+                    public void close() {
+                        inFlight.decrementAndGet();
+                    }
+                };
+                outputs.put(context, out);
+                return out;
+            }, executor, 3);
+
+            Assert.assertEquals(3, failures.size());
+            Assert.assertEquals(3, failures.get(0).getIndex());
+            Assert.assertEquals(10, failures.get(1).getIndex());
+            Assert.assertEquals(17, failures.get(2).getIndex());
+            Assert.assertSame(contexts.get(10), failures.get(1).getContext());
+            Assert.assertTrue(failures.get(0).getException().getCause() instanceof IllegalStateException);
+            Assert.assertTrue(maxInFlight.get() <= 3);
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < contexts.size(); i++) {
+            if (i % 7 != 3) {
+                WordprocessingMLPackage document = WordprocessingMLPackage.load(getInputStream(outputs.get(contexts.get(i))));
+                List<Tbl> tables = DocumentUtil.extractElements(document, Tbl.class);
+                List<Tr> rows = DocumentUtil.extractElements(tables.get(0), Tr.class);
+                Assert.assertEquals(2, rows.size());
+                Assert.assertTrue(TextUtils.getText(rows.get(1)).contains("Character " + i));
+            }
+        }
+    }
+
+    @Test
+    public void finishesStartedDocumentsWhenContextsFail() throws Exception {
+        DocxStamper<Object> stamper = new DocxStamper<>();
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("RepeatTableRowTest.docx"));
+        Iterable<Object> contexts = () -> new Iterator<Object>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Object next() {
+                if (index == 6) {
+                    throw new IllegalStateException("cursor closed");
+                }
+                int i = index++;
+                return i == 2 ? new SharedStamperTest.FailingCharactersContext() : createContext(i);
+            }
+        };
+
+        Set<OutputStream> closed = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            stamper.stampAll(template, contexts, context -> new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    closed.add(this);
+                }
+            }, executor, 3);
+            Assert.fail("stampAll should have failed");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("cursor closed", e.getMessage());
+            // all started documents are finished, the failed one is attached
+            Assert.assertEquals(6, closed.size());
+            Assert.assertEquals(1, e.getSuppressed().length);
+            Assert.assertTrue(e.getSuppressed()[0] instanceof DocxStamperException);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void givesBackThePermitWhenTheExecutorFails() throws Exception {
+        DocxStamper<Object> stamper = new DocxStamper<>();
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("RepeatTableRowTest.docx"));
+        List<Object> contexts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            contexts.add(createContext(i));
+        }
+
+        AtomicInteger executed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Executor executor = task -> {
+            if (executed.getAndIncrement() == 2) {
+                throw new IllegalStateException("executor shut down");
+            }
+            pool.execute(task);
+        };
+        try {
+            stamper.stampAll(template, contexts, context -> new ByteArrayOutputStream(), executor, 3);
+            Assert.fail("stampAll should have failed");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("executor shut down", e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void stampsAllContextsOnCallingThread() throws Exception {
+        DocxStamper<CharactersContext> stamper = new DocxStamper<>();
+        List<CharactersContext> contexts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            contexts.add(createContext(i));
+        }
+
+        List<ByteArrayOutputStream> outputs = new ArrayList<>();
+        List<StampingFailure<CharactersContext>> failures = stamper.stampAll(getClass().getResourceAsStream("RepeatTableRowTest.docx"), contexts, context -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            outputs.add(out);
+            return out;
+        });
+
+        Assert.assertTrue(failures.isEmpty());
+        Assert.assertEquals(3, outputs.size());
+        for (int i = 0; i < outputs.size(); i++) {
+            WordprocessingMLPackage document = WordprocessingMLPackage.load(getInputStream(outputs.get(i)));
+            Assert.assertTrue(TextUtils.getText(document.getMainDocumentPart().getContents()).contains("Character " + i));
+        }
+    }
+
+    @Test
+    public void stampsEachContextWithBoundedReadAhead() throws Exception {
+        DocxStamper<Object> stamper = new DocxStamper<>();
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("RepeatTableRowTest.docx"));
+
+        AtomicInteger pulled = new AtomicInteger();
+        Iterator<Object> contexts = new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return pulled.get() < 6;
+            }
+
+            @Override
+            public Object next() {
+                int i = pulled.getAndIncrement();
+                return i == 2 ? new SharedStamperTest.FailingCharactersContext() : createContext(i);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Iterator<StampedDocument<Object>> documents = stamper.stampEach(template, contexts, executor, 2);
+            Assert.assertTrue(documents.hasNext());
+            Assert.assertEquals(2, pulled.get());
+
+            for (int i = 0; i < 6; i++) {
+                Assert.assertTrue(documents.hasNext());
+                if (i == 2) {
+                    try {
+                        documents.next();
+                        Assert.fail("stamping should have failed");
+                    } catch (DocxStamperException e) {
+                        Assert.assertTrue(e.getCause() instanceof DocxStamperException);
+                        Assert.assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+                        // thrown on the consuming thread
+                        Assert.assertTrue(Arrays.stream(e.getStackTrace()).anyMatch(frame -> frame.getClassName().equals(StampAllTest.class.getName())));
+                    }
+                    continue;
+                }
+                StampedDocument<Object> document = documents.next();
+                Assert.assertEquals(i, document.getIndex());
+                Assert.assertTrue(pulled.get() <= i + 3);
+                WordprocessingMLPackage stamped = WordprocessingMLPackage.load(document.getInputStream());
+                Assert.assertTrue(TextUtils.getText(stamped.getMainDocumentPart().getContents()).contains("Character " + i));
+            }
+            Assert.assertFalse(documents.hasNext());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void closingTheIteratorCancelsDocumentsNotStartedYet() throws Exception {
+        AtomicInteger stamped = new AtomicInteger();
+        DocxStamper<Object> stamper = new DocxStamper<>(new DocxStamperConfiguration()
+                .addTypeResolver(String.class, (document, expressionResult) -> {
+                    stamped.incrementAndGet();
+                    return new R();
+                }));
+        CompiledTemplate template = DocxStamper.compile(getClass().getResourceAsStream("RepeatTableRowTest.docx"));
+
+        List<Object> contexts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            contexts.add(createContext(i));
+        }
+        // runs the stamps only when asked to, so that none has started when the iterator is closed
+        List<Runnable> tasks = new ArrayList<>();
+        try (StampingIterator<Object> documents = stamper.stampEach(template, contexts.iterator(), tasks::add, 3)) {
+            Assert.assertTrue(documents.hasNext());
+            Assert.assertEquals(3, tasks.size());
+            documents.close();
+            Assert.assertFalse(documents.hasNext());
+        }
+        tasks.forEach(Runnable::run);
+        Assert.assertEquals(3, tasks.size());
+        Assert.assertEquals(0, stamped.get());
+    }
+
+    private CharactersContext createContext(int i) {
+        CharactersContext context = new CharactersContext();
+        context.getCharacters().add(new Character("Character " + i, "Actor " + i));
+        return context;
+    }
+}
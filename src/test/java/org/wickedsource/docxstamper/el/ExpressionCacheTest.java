@@ -0,0 +1,105 @@
+package org.wickedsource.docxstamper.el;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ExpressionCacheTest {
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+
+    @Test
+    public void parsesEachExpressionOnlyOnce() {
+        ExpressionCache cache = new ExpressionCache();
+
+        Expression first = cache.get("1 + 1", parser::parseExpression);
+        Expression second = cache.get("1 + 1", parser::parseExpression);
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedExpression() {
+        ExpressionCache cache = new ExpressionCache(2, ExpressionCache.EvictionPolicy.LEAST_RECENTLY_USED);
+
+        Expression a = cache.get("'a'", parser::parseExpression);
+        cache.get("'b'", parser::parseExpression);
+        cache.get("'a'", parser::parseExpression);
+        cache.get("'c'", parser::parseExpression);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertSame(a, cache.get("'a'", parser::parseExpression));
+        cache.get("'b'", parser::parseExpression);
+        Assert.assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsFirstAddedExpression() {
+        ExpressionCache cache = new ExpressionCache(2, ExpressionCache.EvictionPolicy.FIRST_IN_FIRST_OUT);
+
+        Expression a = cache.get("'a'", parser::parseExpression);
+        cache.get("'b'", parser::parseExpression);
+        cache.get("'a'", parser::parseExpression);
+        cache.get("'c'", parser::parseExpression);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNotSame(a, cache.get("'a'", parser::parseExpression));
+    }
+
+    @Test
+    public void sizeZeroDisablesCaching() {
+        ExpressionCache cache = new ExpressionCache(0, ExpressionCache.EvictionPolicy.LEAST_RECENTLY_USED);
+
+        cache.get("1 + 1", parser::parseExpression);
+        cache.get("1 + 1", parser::parseExpression);
+
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+    }
+
+    @Test(timeout = 60000)
+    public void countsConcurrentLookups() throws Exception {
+        ExpressionCache cache = new ExpressionCache(10, ExpressionCache.EvictionPolicy.LEAST_RECENTLY_USED);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        cache.get(String.valueOf(i % 20), parser::parseExpression);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(4000, cache.getHitCount() + cache.getMissCount());
+        Assert.assertTrue(cache.size() <= 10);
+    }
+
+    @Test
+    public void resolverUsesCacheForStrippedExpressions() {
+        ExpressionCache cache = new ExpressionCache();
+        ExpressionResolver resolver = new ExpressionResolver(new NoOpEvaluationContextConfigurer(), cache);
+
+        Assert.assertEquals(2, resolver.resolveExpression("${1 + 1}", null));
+        Assert.assertEquals(2, resolver.resolveExpression("1 + 1", null));
+
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getHitCount());
+    }
+}
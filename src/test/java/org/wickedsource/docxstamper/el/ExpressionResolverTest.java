@@ -0,0 +1,96 @@
+package org.wickedsource.docxstamper.el;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.SpelMessage;
+import org.wickedsource.docxstamper.context.Character;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExpressionResolverTest {
+
+    @Test
+    public void configuresEvaluationContextOnlyOncePerStamp() {
+        AtomicInteger configurations = new AtomicInteger();
+        ExpressionResolver resolver = new ExpressionResolver(context -> {
+            configurations.incrementAndGet();
+            context.setVariable("prefix", "Mr. ");
+        });
+
+        Assert.assertEquals("Mr. Homer", resolver.resolveExpression("#prefix + #root", "Homer"));
+        Assert.assertEquals("Mr. Bart", resolver.resolveExpression("#prefix + #root", "Bart"));
+        Assert.assertEquals(1, configurations.get());
+
+        resolver.resetEvaluationContext();
+        Assert.assertEquals("Mr. Lisa", resolver.resolveExpression("#prefix + #root", "Lisa"));
+        Assert.assertEquals(2, configurations.get());
+    }
+
+    @Test
+    public void resolversSharingTheCacheCallTheirOwnImplementations() {
+        ExpressionCache cache = new ExpressionCache();
+        ExpressionResolver homerResolver = new ExpressionResolver(new NoOpEvaluationContextConfigurer(), cache);
+        homerResolver.exposeInterface(Greeter.class, (Greeter) () -> "Homer");
+        ExpressionResolver bartResolver = new ExpressionResolver(new NoOpEvaluationContextConfigurer(), cache);
+        bartResolver.exposeInterface(Greeter.class, (Greeter) () -> "Bart");
+
+        // the second evaluation of each resolver uses the method cached in the shared expression
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals("Homer", homerResolver.resolveExpression("greet()", "root"));
+            Assert.assertEquals("Bart", bartResolver.resolveExpression("greet()", "root"));
+        }
+    }
+
+    @Test
+    public void resolverNotExposingAnInterfaceDoesNotCallCachedImplementation() {
+        ExpressionCache cache = new ExpressionCache();
+        ExpressionResolver commentResolver = new ExpressionResolver(new NoOpEvaluationContextConfigurer(), cache);
+        commentResolver.exposeInterface(Greeter.class, (Greeter) () -> "Homer");
+        ExpressionResolver placeholderResolver = new ExpressionResolver(new NoOpEvaluationContextConfigurer(), cache);
+
+        Assert.assertEquals("Homer", commentResolver.resolveExpression("greet()", "root"));
+        try {
+            placeholderResolver.resolveExpression("greet()", "root");
+            Assert.fail("expected greet() to be unknown to the resolver not exposing Greeter");
+        } catch (SpelEvaluationException e) {
+            Assert.assertEquals(SpelMessage.METHOD_NOT_FOUND, e.getMessageCode());
+        }
+        Assert.assertEquals("Homer", commentResolver.resolveExpression("greet()", "root"));
+    }
+
+    @Test
+    public void compilesExpressionsInImmediateMode() {
+        ExpressionResolver resolver = new ExpressionResolver(new NoOpEvaluationContextConfigurer(), new ExpressionCache(), SpelCompilerMode.IMMEDIATE);
+        Character homer = new Character("Homer Simpson", "Dan Castellaneta");
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("Homer Simpson", resolver.resolveExpression("${name}", homer));
+        }
+
+        // only the compiled expression is bound to the type of the root object it was compiled for
+        try {
+            resolver.resolveExpression("${name}", new Named("Bart Simpson"));
+            Assert.fail("expected the compiled expression to fail");
+        } catch (SpelEvaluationException e) {
+            Assert.assertEquals(SpelMessage.EXCEPTION_RUNNING_COMPILED_EXPRESSION, e.getMessageCode());
+        }
+    }
+
+    public static class Named {
+
+        private final String name;
+
+        public Named(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public interface Greeter {
+        String greet();
+    }
+}
@@ -70,4 +70,40 @@ public class ExpressionUtilTest {
         finder.stripExpression(null);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void findsExpressionsWithNestedBracesAndStringLiterals() {
+        String text = "a ${ {1, 2}.size() } b #{displayParagraphIf(name == '}')} c";
+
+        ExpressionUtil finder = new ExpressionUtil();
+        List<ExpressionMatch> expressions = finder.findExpressions(text);
+
+        Assert.assertEquals(2, expressions.size());
+        Assert.assertEquals("${ {1, 2}.size() }", expressions.get(0).getExpression());
+        Assert.assertEquals(" {1, 2}.size() ", expressions.get(0).getBody());
+        Assert.assertTrue(expressions.get(0).isVariableExpression());
+        Assert.assertEquals(2, expressions.get(0).getStart());
+        Assert.assertEquals(20, expressions.get(0).getEnd());
+        Assert.assertEquals("#{displayParagraphIf(name == '}')}", expressions.get(1).getExpression());
+        Assert.assertTrue(expressions.get(1).isProcessorExpression());
+        Assert.assertEquals(text.indexOf("#{"), expressions.get(1).getStart());
+    }
+
+    @Test
+    public void skipsUnclosedExpressionAndFindsFollowingOnes() {
+        String text = "${ ' } ${placeholder}";
+
+        ExpressionUtil finder = new ExpressionUtil();
+        List<String> placeholders = finder.findVariableExpressions(text);
+
+        Assert.assertEquals(1, placeholders.size());
+        Assert.assertEquals("${placeholder}", placeholders.get(0));
+    }
+
+    @Test
+    public void stripsProcessorExpressions() {
+        ExpressionUtil finder = new ExpressionUtil();
+        Assert.assertEquals("myExpression", finder.stripExpression("#{myExpression}"));
+        Assert.assertEquals("", finder.stripExpression("${}"));
+    }
+
+}
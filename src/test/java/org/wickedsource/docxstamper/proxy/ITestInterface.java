@@ -1,7 +0,0 @@
-package org.wickedsource.docxstamper.proxy;
-
-public interface ITestInterface {
-
-    String returnString(String string);
-
-}
@@ -5,6 +5,9 @@ import org.junit.Test;
 import org.wickedsource.docxstamper.util.ParagraphUtil;
 import org.wickedsource.docxstamper.util.ParagraphWrapper;
 import org.wickedsource.docxstamper.util.RunUtil;
+import org.wickedsource.docxstamper.util.TextReplacement;
+
+import java.util.Arrays;
 
 public class ParagraphWrapperTest {
 
@@ -83,4 +86,42 @@ public class ParagraphWrapperTest {
         return new ParagraphWrapper(ParagraphUtil.create("lorem", " ", "ipsum"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void replacesSeveralPlaceholdersAtOnce() {
+        ParagraphWrapper wrapper = new ParagraphWrapper(ParagraphUtil.create("${a} and ${", "b", "} in ${c}!"));
+        wrapper.replace(Arrays.asList(
+                new TextReplacement(0, 4, RunUtil.create("Tom")),
+                new TextReplacement(17, 4, RunUtil.create("town")),
+                new TextReplacement(9, 4, RunUtil.create("Jerry"))));
+        Assert.assertEquals("Tom and Jerry in town!", wrapper.getText());
+    }
+
+    @Test
+    public void replacesSeveralPlaceholdersWithinSingleRunAtOnce() {
+        ParagraphWrapper wrapper = new ParagraphWrapper(ParagraphUtil.create("My ${a} is ${b}."));
+        wrapper.replace(Arrays.asList(
+                new TextReplacement(3, 4, RunUtil.create("name")),
+                new TextReplacement(11, 4, RunUtil.create("Bob"))));
+        Assert.assertEquals("My name is Bob.", wrapper.getText());
+        Assert.assertEquals(5, wrapper.getRuns().size());
+    }
+
+    @Test
+    public void replacesPlaceholdersSpanningSeveralRunsWithRunsInBetweenAtOnce() {
+        ParagraphWrapper wrapper = new ParagraphWrapper(ParagraphUtil.create("${", "a", "}", " and ", "${b", "}", " end", " ${c} ", "!"));
+        wrapper.replace(Arrays.asList(
+                new TextReplacement(0, 4, RunUtil.create("Tom")),
+                new TextReplacement(9, 4, RunUtil.create("Jerry")),
+                new TextReplacement(18, 4, RunUtil.create("now"))));
+        Assert.assertEquals("Tom and Jerry end now !", wrapper.getText());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void overlappingReplacementsAreRejected() {
+        ParagraphWrapper wrapper = new ParagraphWrapper(ParagraphUtil.create("lorem ipsum"));
+        wrapper.replace(Arrays.asList(
+                new TextReplacement(0, 5, RunUtil.create("a")),
+                new TextReplacement(4, 3, RunUtil.create("b"))));
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.wickedsource.docxstamper.replace.typeresolver.image;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.xmlgraphics.image.loader.ImageSize;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class ImageMetadataTest {
+
+    @Test
+    public void readsPngWithoutResolution() throws IOException {
+        ImageMetadata metadata = ImageMetadata.read(readResource("butterfly.png"));
+        assertMetadata(metadata, "image/png", 2400, 1200, 72);
+    }
+
+    @Test
+    public void readsJpegWithJfifResolution() throws IOException {
+        assertMetadata(ImageMetadata.read(readResource("monalisa.jpg")), "image/jpeg", 134, 101, 96);
+        // JFIF density units 0 only defines the aspect ratio of the pixels
+        assertMetadata(ImageMetadata.read(readResource("map.jpg")), "image/jpeg", 1500, 922, 72);
+    }
+
+    @Test
+    public void readsJpegHeadersBehindLargeSegments() throws IOException {
+        byte[] jpeg = readResource("monalisa.jpg");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        // APP1 segments of the maximum length, e.g. EXIF or XMP, before the JFIF and frame headers
+        for (int i = 0; i < 3; i++) {
+            out.write(new byte[]{(byte) 0xff, (byte) 0xe1, (byte) 0xff, (byte) 0xff});
+            out.write(new byte[0xffff - 2]);
+        }
+        out.write(jpeg, 2, jpeg.length - 2);
+        assertMetadata(ImageMetadata.read(new ByteArrayInputStream(out.toByteArray())), "image/jpeg", 134, 101, 96);
+    }
+
+    @Test
+    public void readsPngResolutionFromPhysChunk() {
+        byte[] png = {
+                (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n',
+                0, 0, 0, 13, 'I', 'H', 'D', 'R', 0, 0, 0, 10, 0, 0, 0, 20, 8, 2, 0, 0, 0, 0, 0, 0, 0,
+                // 3780 pixels per meter, i.e. 96 dpi
+                0, 0, 0, 9, 'p', 'H', 'Y', 's', 0, 0, 0x0e, (byte) 0xc4, 0, 0, 0x0e, (byte) 0xc4, 1, 0, 0, 0, 0,
+                0, 0, 0, 0, 'I', 'E', 'N', 'D', 0, 0, 0, 0};
+        ImageMetadata metadata = ImageMetadata.read(png);
+        Assert.assertEquals(10, metadata.getWidth());
+        Assert.assertEquals(20, metadata.getHeight());
+        Assert.assertEquals(96.012, metadata.getHorizontalResolution(), 0.001);
+        Assert.assertEquals(96.012, metadata.getVerticalResolution(), 0.001);
+    }
+
+    @Test
+    public void readsGifScreenSize() {
+        byte[] gif = {'G', 'I', 'F', '8', '9', 'a', 0x2c, 0x01, (byte) 0xc8, 0x00, 0, 0, 0};
+        assertMetadata(ImageMetadata.read(gif), "image/gif", 300, 200, 72);
+    }
+
+    @Test
+    public void leavesOtherAndTruncatedImagesToDocx4j() {
+        Assert.assertNull(ImageMetadata.read(new byte[]{'B', 'M', 0, 0, 0, 0}));
+        Assert.assertNull(ImageMetadata.read(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0}));
+        Assert.assertNull(ImageMetadata.read(new byte[]{(byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xe0, 0, 16}));
+    }
+
+    @Test
+    public void createsImageInfoForScaling() throws IOException {
+        ImageSize size = ImageMetadata.read(readResource("monalisa.jpg")).toImageInfo().getSize();
+        Assert.assertEquals(134, size.getWidthPx());
+        Assert.assertEquals(101, size.getHeightPx());
+        // 134 pixels at 96 dpi are 100.5 points
+        Assert.assertEquals(100500, size.getWidthMpt());
+    }
+
+    private void assertMetadata(ImageMetadata metadata, String mimeType, int width, int height, double resolution) {
+        Assert.assertNotNull(metadata);
+        Assert.assertEquals(mimeType, metadata.getMimeType());
+        Assert.assertEquals(width, metadata.getWidth());
+        Assert.assertEquals(height, metadata.getHeight());
+        Assert.assertEquals(resolution, metadata.getHorizontalResolution(), 0.001);
+        Assert.assertEquals(resolution, metadata.getVerticalResolution(), 0.001);
+    }
+
+    private byte[] readResource(String name) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/org/wickedsource/docxstamper/" + name)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.wickedsource.docxstamper.util;
+
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.Comments;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wickedsource.docxstamper.AbstractDocx4jTest;
+
+public class CommentIndexTest extends AbstractDocx4jTest {
+
+    @Test
+    public void findsTheSameParagraphCommentsAsCommentUtil() throws Docx4JException {
+        WordprocessingMLPackage document = loadDocument("CommentUtilTest.docx");
+        CommentIndex index = new CommentIndex(document);
+
+        for (P paragraph : DocumentUtil.extractElements(document, P.class)) {
+            Assert.assertSame(CommentUtil.getCommentFor(paragraph, document), index.getCommentFor(paragraph));
+        }
+        P p2 = (P) document.getMainDocumentPart().getContent().get(1);
+        Assert.assertEquals("Comment for paragraph 2.", CommentUtil.getCommentString(index.getCommentFor(p2)));
+    }
+
+    @Test
+    public void findsTheSameRunCommentsAsCommentUtil() throws Docx4JException {
+        WordprocessingMLPackage document = loadDocument("../ConditionalDisplayOfParagraphsTest.docx");
+        CommentIndex index = new CommentIndex(document);
+
+        int commentedRuns = 0;
+        for (R run : DocumentUtil.extractElements(document, R.class)) {
+            Comments.Comment comment = CommentUtil.getCommentAround(run, document);
+            Assert.assertSame(comment, index.getCommentAround(run));
+            if (comment != null) {
+                commentedRuns++;
+            }
+        }
+        Assert.assertTrue(commentedRuns > 0);
+    }
+}
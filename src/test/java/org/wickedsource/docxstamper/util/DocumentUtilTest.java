@@ -0,0 +1,75 @@
+package org.wickedsource.docxstamper.util;
+
+import org.apache.commons.io.IOUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.wml.Drawing;
+import org.docx4j.wml.R;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wickedsource.docxstamper.AbstractDocx4jTest;
+import org.wickedsource.docxstamper.DocxStamper;
+import org.wickedsource.docxstamper.DocxStamperConfiguration;
+import org.wickedsource.docxstamper.context.ImageContext;
+import org.wickedsource.docxstamper.io.CompressionStrategy;
+import org.wickedsource.docxstamper.io.LazyLoad;
+import org.wickedsource.docxstamper.io.ZipArchive;
+import org.wickedsource.docxstamper.io.ZipArchivePartStore;
+import org.wickedsource.docxstamper.io.ZipCompression;
+import org.wickedsource.docxstamper.replace.typeresolver.image.Image;
+import org.wickedsource.docxstamper.replace.typeresolver.image.ImageResolver;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.zip.Deflater;
+
+public class DocumentUtilTest extends AbstractDocx4jTest {
+
+    @Test
+    public void importsEachImageOnceByRewritingRelationshipIds() throws Exception {
+        byte[] monalisa = IOUtils.toByteArray(getClass().getResourceAsStream("/org/wickedsource/docxstamper/monalisa.jpg"));
+        ImageContext context = new ImageContext();
+        context.setMonalisa(new Image(monalisa));
+        WordprocessingMLPackage sourceDocument = stampAndLoad(
+                getClass().getResourceAsStream("/org/wickedsource/docxstamper/ImageReplacementInGlobalParagraphsTest.docx"), context);
+
+        WordprocessingMLPackage destDocument = WordprocessingMLPackage.createPackage();
+        BinaryPartAbstractImage existingImage = ImageResolver.getOrCreateImagePart(destDocument, monalisa);
+        DocumentUtil.prepareDocumentForInsert(sourceDocument, destDocument);
+
+        // the image already contained in the destination document is referenced by both image runs
+        DocxImageExtractor imageExtractor = new DocxImageExtractor(sourceDocument);
+        List<R> imageRuns = DocumentUtil.extractElements(sourceDocument.getMainDocumentPart(), R.class);
+        imageRuns.removeIf(run -> DocumentUtil.extractElements(run, Drawing.class).isEmpty());
+        Assert.assertEquals(2, imageRuns.size());
+        for (R run : imageRuns) {
+            Assert.assertEquals(existingImage.getRelLast().getId(), imageExtractor.getRunDrawingRelId(run));
+        }
+        Assert.assertEquals(1, destDocument.getParts().getParts().keySet().stream()
+                .filter(partName -> partName.getName().startsWith("/word/media/"))
+                .count());
+    }
+
+    @Test
+    public void readsImageDataCompletely() throws Exception {
+        byte[] butterfly = IOUtils.toByteArray(getClass().getResourceAsStream("/org/wickedsource/docxstamper/butterfly.png"));
+        ImageContext context = new ImageContext();
+        context.setMonalisa(new Image(butterfly));
+        DocxStamperConfiguration config = new DocxStamperConfiguration()
+                .setCompressionStrategy(CompressionStrategy.always(ZipCompression.deflated(Deflater.BEST_SPEED)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DocxStamper<ImageContext>(config).stamp(
+                getClass().getResourceAsStream("/org/wickedsource/docxstamper/ImageReplacementInGlobalParagraphsTest.docx"), context, out);
+        // the image is inflated while reading, so that a single read() does not return all of its bytes
+        WordprocessingMLPackage document = (WordprocessingMLPackage) new LazyLoad(
+                new ZipArchivePartStore(new ZipArchive(out.toByteArray()))).get();
+
+        DocxImageExtractor imageExtractor = new DocxImageExtractor(document);
+        String relId = document.getMainDocumentPart().getRelationshipsPart().getRelationships().getRelationship().stream()
+                .filter(relationship -> relationship.getTarget().startsWith("media/"))
+                .findFirst()
+                .get()
+                .getId();
+        Assert.assertArrayEquals(butterfly, imageExtractor.getImageData(relId));
+    }
+}